@@ -91,3 +91,100 @@ create table if not exists public.git_token
 );
 
 create index if not exists idx_git_token_group on public.git_token (group_path);
+
+-- Per-file diff digests of each analyzed sha, used to carry findings over for unchanged files on new pushes
+create table if not exists public.mr_file_digest
+(
+    id           bigint generated always as identity primary key,
+    mr_info_id   bigint                                 not null,
+    file_path    varchar(512)                           not null,
+    diff_hash    varchar(64)                            not null,
+    first_anchor integer,
+    anchor_count integer                                not null default 0,
+    created_at   timestamp with time zone default now() not null,
+    constraint fk_mr_file_digest_mr_info_id foreign key (mr_info_id) references public.mr_info (id) on delete cascade
+);
+
+create index if not exists idx_mr_file_digest_mr_info_id on public.mr_file_digest (mr_info_id);
+
+-- Content-addressed cache of per-request LLM reports (anchors stored relative to the first anchor of the request)
+create table if not exists public.llm_result_cache
+(
+    cache_key   varchar(64) primary key,
+    prompt_type varchar(32)                            not null,
+    model       varchar(128)                           not null,
+    report_json text                                   not null,
+    hit_count   bigint                                 not null default 0,
+    created_at  timestamp with time zone default now() not null,
+    last_hit_at timestamp with time zone default now() not null
+);
+
+create index if not exists idx_llm_result_cache_created_at on public.llm_result_cache (created_at);
+create index if not exists idx_llm_result_cache_last_hit_at on public.llm_result_cache (last_hit_at);
+
+-- Compressed diff refs, file flags and anchor index of each analyzed sha, read by adopt instead of re-fetching the diff
+create table if not exists public.mr_diff_snapshot
+(
+    mr_info_id   bigint primary key,
+    head_sha     varchar(64),
+    anchor_count integer                                not null default 0,
+    payload      bytea                                  not null,
+    created_at   timestamp with time zone default now() not null,
+    constraint fk_mr_diff_snapshot_mr_info_id foreign key (mr_info_id) references public.mr_info (id) on delete cascade
+);
+
+-- Per-token GitLab request rate (token bucket); null falls back to mr.analysis.tokens.default-*
+alter table public.git_token add column if not exists rate_per_second double precision;
+alter table public.git_token add column if not exists burst integer;
+
+-- Cross-node lease on the analysis of one (project, mr, sha); the holder renews it while analyzing
+create table if not exists public.mr_analysis_lease
+(
+    project_id bigint                                 not null,
+    mr_id      bigint                                 not null,
+    sha        varchar(256)                           not null,
+    owner      varchar(128)                           not null,
+    expires_at timestamp with time zone               not null,
+    created_at timestamp with time zone default now() not null,
+    primary key (project_id, mr_id, sha)
+);
+
+-- Migration: findings get ids from the column's sequence in blocks of 50 allocated by the application
+-- (must match allocationSize on MrAnalysisDetailEntity), so inserts can be batched
+alter table public.mr_analysis_detail
+    alter column id set generated by default,
+    alter column id set increment by 50;
+
+-- Migration: numeric severity rank (Severity.rank()) written with each finding, so ordered report
+-- reads walk one index instead of sorting on a case expression
+alter table public.mr_analysis_detail
+    add column if not exists severity_rank smallint default 98 not null;
+update public.mr_analysis_detail
+set severity_rank = case lower(trim(severity))
+                        when 'blocker' then 0
+                        when 'critical' then 0
+                        when 'high' then 1
+                        when 'major' then 1
+                        when 'medium' then 2
+                        when 'med' then 2
+                        when 'low' then 3
+                        when 'minor' then 3
+                        when 'info' then 4
+                        when 'information' then 4
+                        when 'informational' then 4
+                        else 98 end;
+create index if not exists idx_mr_analysis_detail_info_rank
+    on public.mr_analysis_detail (mr_info_id, severity_rank, id);
+-- The new index leads with mr_info_id, so it replaces the single-column one
+drop index if exists public.idx_mr_analysis_detail_mr_info_id;
+
+-- Keyset pagination of findings across projects (newest first), optionally per project
+create index if not exists idx_mr_analysis_detail_created
+    on public.mr_analysis_detail (created_at desc, id desc);
+create index if not exists idx_mr_analysis_detail_project_created
+    on public.mr_analysis_detail (project_id, created_at desc, id desc);
+
+-- Completion marker of an analysis: findings are stored as results arrive, so a row without it holds
+-- a partial run. Rows written before this column existed were analyzed in one transaction
+alter table public.mr_info add column if not exists analysis_completed_at timestamp with time zone;
+update public.mr_info set analysis_completed_at = updated_at where analysis_completed_at is null;
@@ -0,0 +1,65 @@
+package com.kevindai.git.helper.config;
+
+import com.kevindai.git.helper.mr.service.GitLabRetryPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.RequiredArgsConstructor;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Pooled keep-alive HTTP client used for GitLab only. Response timeouts are chosen per request by
+ * operation class (metadata / diff / write); retries are done by the GitLab interceptor in
+ * {@link RestClientTokenConfig}, so the client's own retry is disabled.
+ * Pool meters: {@code httpcomponents.httpclient.pool.*} with {@code httpclient=gitlab}.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class GitLabHttpClientConfig {
+
+    private final MrAnalysisProperties properties;
+    private final GitLabRetryPolicy retryPolicy;
+
+    @Bean
+    public HttpComponentsClientHttpRequestFactory gitLabRequestFactory(MeterRegistry meterRegistry) {
+        MrAnalysisProperties.GitlabHttp cfg = properties.getGitlabHttp();
+        int maxConnections = Math.max(1, cfg.getMaxConnections());
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                // a single GitLab host, so the per-route limit is the pool limit
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(cfg.getConnectTimeout()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(pool)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(cfg.getIdleTimeout()))
+                .disableAutomaticRetries()
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(pool, "gitlab").bindTo(meterRegistry);
+
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(client);
+        factory.setHttpContextFactory((method, uri) -> {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.of(cfg.getConnectionRequestTimeout()))
+                    .setResponseTimeout(Timeout.of(retryPolicy.responseTimeout(retryPolicy.classify(method, uri))))
+                    .build());
+            return context;
+        });
+        return factory;
+    }
+}
@@ -0,0 +1,305 @@
+package com.kevindai.git.helper.config;
+
+import com.kevindai.git.helper.mr.dto.AdoptMode;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "mr.analysis")
+public class MrAnalysisProperties {
+
+    private Job job = new Job();
+    private Pipeline pipeline = new Pipeline();
+    private Executor executor = new Executor();
+    private Concurrency concurrency = new Concurrency();
+    private Planner planner = new Planner();
+    private Incremental incremental = new Incremental();
+    private Cache cache = new Cache();
+    private Adopt adopt = new Adopt();
+    private GitlabCache gitlabCache = new GitlabCache();
+    private Diffs diffs = new Diffs();
+    private GitlabHttp gitlabHttp = new GitlabHttp();
+    private Tokens tokens = new Tokens();
+    private LlmLimit llmLimit = new LlmLimit();
+    private LlmOutput llmOutput = new LlmOutput();
+    private Coalesce coalesce = new Coalesce();
+
+    @Setter
+    @Getter
+    public static class Job {
+        /**
+         * Threads running background (job mode) analyses.
+         */
+        private int poolSize = 4;
+        /**
+         * Jobs waiting for a free job thread before submissions are rejected.
+         */
+        private int queueCapacity = 50;
+        /**
+         * How long a finished job stays queryable.
+         */
+        private Duration retention = Duration.ofHours(1);
+    }
+
+    @Setter
+    @Getter
+    public static class Pipeline {
+        /**
+         * Finished LLM results buffered between the fan-out and the persist stage.
+         * LLM workers block once it is full, so persistence applies back-pressure.
+         */
+        private int persistQueueCapacity = 32;
+    }
+
+    public enum ExecutorMode {
+        /**
+         * Fixed pool of platform threads; concurrency is bounded by the pool size.
+         */
+        PLATFORM,
+        /**
+         * One virtual thread per task; concurrency is bounded by the endpoint permits only.
+         */
+        VIRTUAL
+    }
+
+    @Setter
+    @Getter
+    public static class Executor {
+        private ExecutorMode mode = ExecutorMode.PLATFORM;
+        /**
+         * Pool size in PLATFORM mode.
+         */
+        private int poolSize = 5;
+        /**
+         * Queue capacity in PLATFORM mode.
+         */
+        private int queueCapacity = 100;
+    }
+
+    @Setter
+    @Getter
+    public static class Concurrency {
+        /**
+         * Max in-flight requests against the GitLab API across all callers.
+         */
+        private int gitlabPermits = 16;
+    }
+
+    @Setter
+    @Getter
+    public static class Planner {
+        /**
+         * Token budget for the diff content of one LLM request (system prompt excluded).
+         */
+        private int maxTokensPerRequest = 6000;
+        /**
+         * Upper bound on files packed into one request, to keep findings attributable.
+         */
+        private int maxFilesPerRequest = 20;
+        /**
+         * Characters per token used by the estimator.
+         */
+        private double charsPerToken = 3.5;
+    }
+
+    @Setter
+    @Getter
+    public static class Incremental {
+        /**
+         * Re-analyze only files whose diff changed since the previously analyzed sha of the same MR,
+         * carrying findings over for the others.
+         */
+        private boolean enabled = true;
+    }
+
+    @Setter
+    @Getter
+    public static class Cache {
+        /**
+         * Reuse LLM reports for request content seen before (same prompt type and model).
+         */
+        private boolean enabled = true;
+        /**
+         * Entries older than this are evicted regardless of use.
+         */
+        private Duration ttl = Duration.ofDays(14);
+        /**
+         * Max persisted entries; least recently used ones beyond this are evicted.
+         */
+        private int maxEntries = 50_000;
+        /**
+         * Entries kept in the in-process LRU in front of the database.
+         */
+        private int memoryEntries = 500;
+    }
+
+    @Setter
+    @Getter
+    public static class Adopt {
+        /**
+         * Discussions posted concurrently per GitLab token by bulk adopt.
+         */
+        private int parallelismPerToken = 4;
+        /**
+         * Default posting mode of bulk adopt when the request does not specify one.
+         */
+        private AdoptMode mode = AdoptMode.DISCUSSION;
+    }
+
+    @Setter
+    @Getter
+    public static class GitlabCache {
+        /**
+         * Project path to id; ids never change, so only renames/transfers make entries stale.
+         */
+        private Duration projectIdTtl = Duration.ofHours(12);
+        private long projectIdMaxEntries = 10_000;
+        /**
+         * MR details per (project, mr). Short on purpose: a new push must be seen by the next analysis.
+         */
+        private Duration mrDetailTtl = Duration.ofSeconds(20);
+        private long mrDetailMaxEntries = 2_000;
+    }
+
+    @Setter
+    @Getter
+    public static class Diffs {
+        /**
+         * Files per page when reading MR diffs from GitLab (GitLab caps it at 100).
+         */
+        private int perPage = 30;
+        /**
+         * Safety stop for the page loop.
+         */
+        private int maxPages = 1_000;
+    }
+
+    @Setter
+    @Getter
+    public static class GitlabHttp {
+        /**
+         * Pooled keep-alive connections to GitLab; keep at or above concurrency.gitlab-permits.
+         */
+        private int maxConnections = 32;
+        private Duration connectTimeout = Duration.ofSeconds(3);
+        /**
+         * Max wait for a free pooled connection.
+         */
+        private Duration connectionRequestTimeout = Duration.ofSeconds(10);
+        /**
+         * Idle connections are closed after this; GitLab/proxies drop idle keep-alives eventually.
+         */
+        private Duration idleTimeout = Duration.ofSeconds(30);
+        /**
+         * Response timeout for metadata reads (projects, MR details, versions).
+         */
+        private Duration metadataTimeout = Duration.ofSeconds(10);
+        /**
+         * Response timeout for diff and compare reads, which can be large.
+         */
+        private Duration diffTimeout = Duration.ofSeconds(60);
+        /**
+         * Response timeout for writes (discussions, draft notes).
+         */
+        private Duration writeTimeout = Duration.ofSeconds(20);
+        /**
+         * Attempts per call including the first. Reads retry on 429/502/503/504 and I/O errors,
+         * writes only on 429 (the request was not processed).
+         */
+        private int maxAttempts = 4;
+        private Duration initialBackoff = Duration.ofMillis(500);
+        private Duration maxBackoff = Duration.ofSeconds(30);
+        /**
+         * A Retry-After longer than this fails the call instead of waiting.
+         */
+        private Duration maxRetryAfter = Duration.ofSeconds(60);
+    }
+
+    @Setter
+    @Getter
+    public static class Tokens {
+        /**
+         * How often git_token is checked for changes.
+         */
+        private long checkIntervalMs = 30_000;
+        /**
+         * Queue GitLab requests per token through a token bucket.
+         */
+        private boolean rateLimitEnabled = true;
+        /**
+         * Requests per second for tokens without git_token.rate_per_second (and for GITLAB_TOKEN).
+         */
+        private double defaultRatePerSecond = 10;
+        /**
+         * Requests allowed back to back after an idle period, for tokens without git_token.burst.
+         */
+        private int defaultBurst = 20;
+        /**
+         * A request that would have to queue longer than this fails instead.
+         */
+        private Duration maxQueueWait = Duration.ofMinutes(2);
+    }
+
+    @Setter
+    @Getter
+    public static class LlmLimit {
+        /**
+         * Concurrent LLM calls allowed at startup; the limit then adapts between min and max.
+         */
+        private int initialLimit = 4;
+        private int minLimit = 1;
+        private int maxLimit = 32;
+        /**
+         * Multiplier applied on an overload signal (429, 5xx, timeout) or a slow call.
+         */
+        private double decreaseFactor = 0.75;
+        /**
+         * A successful call slower than this counts as an overload signal.
+         */
+        private Duration slowCallThreshold = Duration.ofSeconds(90);
+    }
+
+    @Setter
+    @Getter
+    public static class LlmOutput {
+        /**
+         * Stream analysis responses and parse findings as they arrive; a malformed or truncated
+         * response keeps the findings that parsed instead of failing the whole request.
+         */
+        private boolean streaming = false;
+        /**
+         * Longest a streamed response may take end to end.
+         */
+        private Duration streamTimeout = Duration.ofMinutes(5);
+    }
+
+    @Setter
+    @Getter
+    public static class Coalesce {
+        /**
+         * Take a database lease per (project, mr, sha) so analyses on other nodes wait for the
+         * running one instead of repeating it. In-process coalescing is always on.
+         */
+        private boolean leaseEnabled = true;
+        /**
+         * Lease lifetime; the holder renews it every {@code renew-interval-ms}, so it only runs out
+         * when the holder died.
+         */
+        private Duration leaseTtl = Duration.ofMinutes(2);
+        private long renewIntervalMs = 30_000;
+        /**
+         * How often a waiting node checks whether the lease was released.
+         */
+        private Duration pollInterval = Duration.ofSeconds(2);
+        /**
+         * Longest a node waits for another node's analysis before failing.
+         */
+        private Duration waitTimeout = Duration.ofMinutes(30);
+    }
+}
@@ -2,22 +2,58 @@ package com.kevindai.git.helper.config;
 
 import java.util.concurrent.Executor;
 
+import com.kevindai.git.helper.mr.service.GitLabRequestContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
+@EnableScheduling
 public class MrConfig {
 
     @Bean(name = "mrAnalysisExecutor")
-    public Executor mrAnalysisExecutor() {
+    public Executor mrAnalysisExecutor(MrAnalysisProperties properties, GitLabRequestContext requestContext) {
+        MrAnalysisProperties.Executor cfg = properties.getExecutor();
+        if (cfg.getMode() == MrAnalysisProperties.ExecutorMode.VIRTUAL) {
+            // Work is blocking I/O; concurrency is capped by EndpointConcurrencyLimiter, not thread count
+            SimpleAsyncTaskExecutor exec = new SimpleAsyncTaskExecutor("mr-analysis-vt-");
+            exec.setVirtualThreads(true);
+            exec.setTaskDecorator(requestContext::wrap);
+            return exec;
+        }
         ThreadPoolTaskExecutor exec = new ThreadPoolTaskExecutor();
-        exec.setCorePoolSize(5);
-        exec.setMaxPoolSize(5);
-        exec.setQueueCapacity(100);
+        exec.setCorePoolSize(cfg.getPoolSize());
+        exec.setMaxPoolSize(cfg.getPoolSize());
+        exec.setQueueCapacity(cfg.getQueueCapacity());
         exec.setThreadNamePrefix("mr-analysis-");
+        exec.setTaskDecorator(requestContext::wrap);
         exec.setAllowCoreThreadTimeOut(false);
         exec.initialize();
         return exec;
     }
-}
\ No newline at end of file
+
+    // Runs whole analyses submitted in job mode, so request threads return immediately
+    @Bean(name = "mrJobExecutor")
+    public Executor mrJobExecutor(MrAnalysisProperties properties, GitLabRequestContext requestContext) {
+        ThreadPoolTaskExecutor exec = new ThreadPoolTaskExecutor();
+        exec.setCorePoolSize(properties.getJob().getPoolSize());
+        exec.setMaxPoolSize(properties.getJob().getPoolSize());
+        exec.setQueueCapacity(properties.getJob().getQueueCapacity());
+        exec.setThreadNamePrefix("mr-job-");
+        exec.setTaskDecorator(requestContext::wrap);
+        exec.setAllowCoreThreadTimeOut(false);
+        exec.initialize();
+        return exec;
+    }
+
+    // Posts bulk-adopt discussions; parallelism is capped per token in MrAdoptService
+    @Bean(name = "mrAdoptExecutor")
+    public Executor mrAdoptExecutor(GitLabRequestContext requestContext) {
+        SimpleAsyncTaskExecutor exec = new SimpleAsyncTaskExecutor("mr-adopt-");
+        exec.setVirtualThreads(true);
+        exec.setTaskDecorator(requestContext::wrap);
+        return exec;
+    }
+}
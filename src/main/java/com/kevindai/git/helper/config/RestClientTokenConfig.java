@@ -1,26 +1,37 @@
 package com.kevindai.git.helper.config;
 
+import com.kevindai.git.helper.mr.service.EndpointConcurrencyLimiter;
 import com.kevindai.git.helper.mr.service.GitLabRequestContext;
+import com.kevindai.git.helper.mr.service.GitLabRetryPolicy;
+import com.kevindai.git.helper.mr.service.GitLabTokenScheduler;
 import lombok.RequiredArgsConstructor;
-import org.springframework.boot.web.client.RestClientCustomizer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+@Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class RestClientTokenConfig {
 
     private final GitLabRequestContext requestContext;
     private final GitConfig gitConfig;
+    private final EndpointConcurrencyLimiter concurrencyLimiter;
+    private final GitLabRetryPolicy retryPolicy;
+    private final GitLabTokenScheduler tokenScheduler;
     public static final String PRIVATE_TOKEN = "PRIVATE-TOKEN";
 
-    @Bean
-    public RestClientCustomizer tokenInjectingRestClientCustomizer() {
-        return builder -> builder.requestInterceptor(tokenInterceptor());
-    }
-
     private ClientHttpRequestInterceptor tokenInterceptor() {
         return (request, body, execution) -> {
             String token = requestContext.getToken();
@@ -34,9 +45,77 @@ public class RestClientTokenConfig {
         };
     }
 
+    /**
+     * Innermost interceptor: each attempt first waits for its token's rate-limit slot, then takes a
+     * GitLab permit; queueing and backoff sleeps happen without a permit. Attempts after the first
+     * re-execute only the underlying request (the interceptor chain is already exhausted), which is
+     * why this must be registered last.
+     */
+    private ClientHttpRequestInterceptor permitAndRetryInterceptor() {
+        return (request, body, execution) -> {
+            String token = request.getHeaders().getFirst(PRIVATE_TOKEN);
+            for (int attempt = 1; ; attempt++) {
+                pause(retryPolicy.remainingPause(token));
+                tokenScheduler.acquire(token);
+                ClientHttpResponse response;
+                try {
+                    response = executeWithPermit(request, body, execution);
+                } catch (IOException e) {
+                    Duration delay = retryPolicy.retryDelay(request.getMethod(), token, e, attempt);
+                    if (delay == null) {
+                        throw e;
+                    }
+                    log.warn("GitLab {} {} failed (attempt {}): {}; retrying in {} ms",
+                            request.getMethod(), request.getURI().getPath(), attempt, e.toString(), delay.toMillis());
+                    pause(delay);
+                    continue;
+                }
+                Duration delay = retryPolicy.retryDelay(request.getMethod(), token, response.getStatusCode(), response.getHeaders(), attempt);
+                if (delay == null) {
+                    return response;
+                }
+                log.warn("GitLab {} {} returned {} (attempt {}); retrying in {} ms",
+                        request.getMethod(), request.getURI().getPath(), response.getStatusCode().value(), attempt, delay.toMillis());
+                response.close();
+                pause(delay);
+            }
+        };
+    }
+
+    private ClientHttpResponse executeWithPermit(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        try {
+            return concurrencyLimiter.call(EndpointConcurrencyLimiter.Endpoint.GITLAB, () -> {
+                try {
+                    return execution.execute(request, body);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void pause(Duration delay) throws InterruptedIOException {
+        if (delay.isZero() || delay.isNegative()) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off a GitLab call");
+        }
+    }
+
     @Bean
-    public RestClient restClient(RestClient.Builder builder) {
-        // The builder will be customized by RestClientCustomizer above to inject token header
-        return builder.build();
+    public RestClient restClient(RestClient.Builder builder, HttpComponentsClientHttpRequestFactory gitLabRequestFactory) {
+        // Interceptors are applied to this GitLab client only, not to every RestClient built
+        // from the shared builder (the LLM client must not receive the GitLab token)
+        return builder
+                .requestFactory(gitLabRequestFactory)
+                .requestInterceptor(tokenInterceptor())
+                .requestInterceptor(permitAndRetryInterceptor())
+                .build();
     }
 }
@@ -1,5 +1,6 @@
 package com.kevindai.git.helper.controller;
 
+import com.kevindai.git.helper.mr.service.LlmConcurrencyLimiter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -12,10 +13,11 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/v1/chat")
 public class ChatController {
     private final ChatClient chatClient;
+    private final LlmConcurrencyLimiter llmLimiter;
 
     @PostMapping("/completion")
     public String chat(@RequestParam String message) {
-        return chatClient.prompt().user(message).call()
-                .chatResponse().getResults().getFirst().getOutput().getText();
+        return llmLimiter.call(() -> chatClient.prompt().user(message).call()
+                .chatResponse().getResults().getFirst().getOutput().getText());
     }
 }
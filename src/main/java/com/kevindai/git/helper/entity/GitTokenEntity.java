@@ -25,6 +25,12 @@ public class GitTokenEntity {
     @Column(name = "is_default", nullable = false)
     private boolean isDefault;
 
+    @Column(name = "rate_per_second")
+    private Double ratePerSecond; // null means mr.analysis.tokens.default-rate-per-second
+
+    @Column(name = "burst")
+    private Integer burst; // null means mr.analysis.tokens.default-burst
+
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
@@ -0,0 +1,35 @@
+package com.kevindai.git.helper.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "llm_result_cache")
+public class LlmResultCacheEntity {
+    @Id
+    @Column(name = "cache_key", nullable = false, length = 64)
+    private String cacheKey; // sha-256 of prompt type, model and anchor-free content
+
+    @Column(name = "prompt_type", nullable = false, length = 32)
+    private String promptType;
+
+    @Column(name = "model", nullable = false, length = 128)
+    private String model;
+
+    @Column(name = "report_json", nullable = false, columnDefinition = "TEXT")
+    private String reportJson;
+
+    @Column(name = "hit_count", nullable = false)
+    private Long hitCount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "last_hit_at", nullable = false)
+    private Instant lastHitAt;
+}
@@ -12,7 +12,9 @@ import java.time.Instant;
 @Table(name = "mr_analysis_detail")
 public class MrAnalysisDetailEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence ids (increment 50 in db/mr_info.sql) keep JDBC insert batching possible; IDENTITY disables it
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mr_analysis_detail_id")
+    @SequenceGenerator(name = "mr_analysis_detail_id", sequenceName = "mr_analysis_detail_id_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -28,6 +30,9 @@ public class MrAnalysisDetailEntity {
     @Column(name = "severity", length = 16)
     private String severity;
 
+    @Column(name = "severity_rank", nullable = false)
+    private Integer severityRank; // Severity.rank() of severity, for index-ordered reads
+
     @Column(name = "category", length = 32)
     private String category;
 
@@ -0,0 +1,39 @@
+package com.kevindai.git.helper.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "mr_analysis_lease")
+@IdClass(MrAnalysisLeaseEntity.Key.class)
+public class MrAnalysisLeaseEntity {
+    @Id
+    @Column(name = "project_id", nullable = false)
+    private Long projectId;
+
+    @Id
+    @Column(name = "mr_id", nullable = false)
+    private Long mrId;
+
+    @Id
+    @Column(name = "sha", nullable = false, length = 256)
+    private String sha;
+
+    @Column(name = "owner", nullable = false, length = 128)
+    private String owner; // node holding the lease
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public record Key(Long projectId, Long mrId, String sha) implements Serializable {
+    }
+}
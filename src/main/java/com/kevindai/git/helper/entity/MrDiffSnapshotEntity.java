@@ -0,0 +1,29 @@
+package com.kevindai.git.helper.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "mr_diff_snapshot")
+public class MrDiffSnapshotEntity {
+    @Id
+    @Column(name = "mr_info_id", nullable = false)
+    private Long mrInfoId;
+
+    @Column(name = "head_sha", length = 64)
+    private String headSha;
+
+    @Column(name = "anchor_count", nullable = false)
+    private Integer anchorCount;
+
+    @Column(name = "payload", nullable = false)
+    private byte[] payload; // gzip-compressed DiffSnapshot (diff refs, file flags, anchor index)
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
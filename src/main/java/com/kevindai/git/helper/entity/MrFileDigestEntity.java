@@ -0,0 +1,36 @@
+package com.kevindai.git.helper.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "mr_file_digest")
+public class MrFileDigestEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "mr_info_id", nullable = false)
+    private Long mrInfoId;
+
+    @Column(name = "file_path", nullable = false, length = 512)
+    private String filePath;
+
+    @Column(name = "diff_hash", nullable = false, length = 64)
+    private String diffHash; // sha-256 of the diff with hunk line numbers stripped
+
+    @Column(name = "first_anchor")
+    private Integer firstAnchor; // numeric part of the first A#n anchor of this file
+
+    @Column(name = "anchor_count", nullable = false)
+    private Integer anchorCount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -70,4 +70,8 @@ public class MrInfoEntity {
     @Column(name = "summary_markdown", columnDefinition = "TEXT")
     private String summaryMarkdown;
 
+    // Set by the finalize transaction; null while an analysis of this sha runs or after one died midway
+    @Column(name = "analysis_completed_at")
+    private Instant analysisCompletedAt;
+
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.kevindai.git.helper.mr.controller;
+
+import com.kevindai.git.helper.mr.dto.GitTokenReloadResponse;
+import com.kevindai.git.helper.mr.service.GitTokenService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(path = "/api/v1/admin", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+public class GitTokenAdminController {
+
+    private final GitTokenService gitTokenService;
+
+    /**
+     * Reload git_token into memory right away instead of waiting for the periodic change check.
+     */
+    @PostMapping("/git-tokens/reload")
+    public GitTokenReloadResponse reload() {
+        try {
+            var trie = gitTokenService.reload();
+            return GitTokenReloadResponse.builder()
+                    .status("success")
+                    .groupTokens(trie.groupTokens())
+                    .hasDefault(trie.hasDefault())
+                    .loadedAt(gitTokenService.loadedAt())
+                    .build();
+        } catch (Exception e) {
+            return GitTokenReloadResponse.builder().status("failure").message(e.getMessage()).build();
+        }
+    }
+}
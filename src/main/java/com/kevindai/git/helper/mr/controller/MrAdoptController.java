@@ -1,11 +1,15 @@
 package com.kevindai.git.helper.mr.controller;
 
 import com.kevindai.git.helper.mr.dto.AdoptResponse;
+import com.kevindai.git.helper.mr.dto.BulkAdoptResponse;
+import com.kevindai.git.helper.mr.dto.MrBulkAdoptRequest;
 import com.kevindai.git.helper.mr.service.MrAdoptService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -25,5 +29,21 @@ public class MrAdoptController {
             return AdoptResponse.builder().status("failure").message(e.getMessage()).build();
         }
     }
-}
 
+    @PostMapping(path = "/adopt", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BulkAdoptResponse adoptAll(@Valid @RequestBody MrBulkAdoptRequest req) {
+        try {
+            var results = mrAdoptService.adoptRecommendations(req.getDetailIds(), req.getMode());
+            int adopted = (int) results.stream().filter(r -> "success".equals(r.getStatus())).count();
+            int failed = results.size() - adopted;
+            String status = failed == 0 ? "success" : adopted == 0 ? "failure" : "partial";
+            return BulkAdoptResponse.builder().status(status).adopted(adopted).failed(failed).results(results).build();
+        } catch (Exception e) {
+            return BulkAdoptResponse.builder().status("failure").failed(req.getDetailIds().size())
+                    .results(req.getDetailIds().stream()
+                            .map(id -> BulkAdoptResponse.Item.builder().detailId(id).status("failure").message(e.getMessage()).build())
+                            .toList())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.kevindai.git.helper.mr.controller;
+
+import com.kevindai.git.helper.mr.dto.MrAnalysisJobResponse;
+import com.kevindai.git.helper.mr.service.MrAnalysisJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping(path = "/api/v1/mr")
+@RequiredArgsConstructor
+public class MrAnalysisJobController {
+
+    private final MrAnalysisJobService mrAnalysisJobService;
+
+    @GetMapping(path = "/jobs/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MrAnalysisJobResponse> get(@PathVariable("jobId") String jobId) {
+        return mrAnalysisJobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // SSE stream of per-file progress; ends with a `done` or `error` frame carrying the job snapshot
+    @GetMapping(path = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable("jobId") String jobId) {
+        if (mrAnalysisJobService.find(jobId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(mrAnalysisJobService.subscribe(jobId));
+    }
+}
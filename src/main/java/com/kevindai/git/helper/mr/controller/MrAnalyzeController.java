@@ -3,6 +3,8 @@ package com.kevindai.git.helper.mr.controller;
 import com.kevindai.git.helper.mr.dto.AnalysisStatus;
 import com.kevindai.git.helper.mr.dto.MrAnalyzeRequest;
 import com.kevindai.git.helper.mr.dto.MrAnalyzeResponse;
+import com.kevindai.git.helper.mr.service.MrAnalysisJobService;
+import com.kevindai.git.helper.mr.service.MrAnalysisStreamService;
 import com.kevindai.git.helper.mr.service.MrAnalyzeService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +13,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping(path = "/api/v1/mr", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -18,10 +21,20 @@ import org.springframework.web.bind.annotation.RestController;
 public class MrAnalyzeController {
 
     private final MrAnalyzeService mrAnalyzeService;
+    private final MrAnalysisJobService mrAnalysisJobService;
+    private final MrAnalysisStreamService mrAnalysisStreamService;
 
     @PostMapping(path = "/analyze", consumes = MediaType.APPLICATION_JSON_VALUE)
     public MrAnalyzeResponse analyze(@Valid @RequestBody MrAnalyzeRequest req) {
         try {
+            if (req.isAsync()) {
+                String jobId = mrAnalysisJobService.submit(req);
+                return MrAnalyzeResponse.builder()
+                        .status(AnalysisStatus.IN_PROGRESS)
+                        .mrUrl(req.getMrUrl())
+                        .jobId(jobId)
+                        .build();
+            }
             return mrAnalyzeService.analyzeMr(req);
         } catch (Exception e) {
             return MrAnalyzeResponse.builder()
@@ -32,5 +45,10 @@ public class MrAnalyzeController {
                     .build();
         }
     }
-}
 
+    // SSE stream: `file-done` with each file's persisted findings as it completes, then `done` or `error`
+    @PostMapping(path = "/analyze/stream", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter analyzeStream(@Valid @RequestBody MrAnalyzeRequest req) {
+        return mrAnalysisStreamService.stream(req);
+    }
+}
@@ -0,0 +1,41 @@
+package com.kevindai.git.helper.mr.controller;
+
+import com.kevindai.git.helper.mr.dto.FindingQueryResponse;
+import com.kevindai.git.helper.mr.service.MrFindingQueryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping(path = "/api/v1/mr", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+public class MrFindingQueryController {
+
+    private final MrFindingQueryService findingQueryService;
+
+    // Findings across projects, newest first; follow `nextCursor` for further pages
+    @GetMapping("/findings")
+    public FindingQueryResponse findings(@RequestParam(name = "projectId", required = false) List<Long> projectIds,
+                                         @RequestParam(name = "severity", required = false) List<String> severities,
+                                         @RequestParam(name = "category", required = false) List<String> categories,
+                                         @RequestParam(name = "file", required = false) String file,
+                                         @RequestParam(name = "status", required = false) Integer status,
+                                         @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                         @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                         @RequestParam(name = "cursor", required = false) String cursor,
+                                         @RequestParam(name = "limit", required = false) Integer limit) {
+        try {
+            return findingQueryService.query(new MrFindingQueryService.Query(
+                    projectIds, severities, categories, file, status, from, to, cursor, limit));
+        } catch (Exception e) {
+            return FindingQueryResponse.builder().status("failure").items(List.of()).message(e.getMessage()).build();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.kevindai.git.helper.mr.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/**
+ * How adopted findings are posted to GitLab.
+ */
+public enum AdoptMode {
+    /**
+     * One discussion per finding, each visible (and notified) immediately.
+     */
+    DISCUSSION,
+    /**
+     * One draft note per finding, then a single bulk publish per MR: reviewers get one notification
+     * and GitLab processes one publish event instead of one per finding.
+     */
+    DRAFT;
+
+    @JsonValue
+    public String toJson() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    @JsonCreator
+    public static AdoptMode fromJson(String value) {
+        return value == null ? null : valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,23 @@
+package com.kevindai.git.helper.mr.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BulkAdoptResponse {
+    private String status; // success (all adopted) | partial | failure (none adopted)
+    private int adopted;
+    private int failed;
+    private List<Item> results; // in request order
+
+    @Data
+    @Builder
+    public static class Item {
+        private Long detailId;
+        private String status; // success | failure
+        private String message;
+    }
+}
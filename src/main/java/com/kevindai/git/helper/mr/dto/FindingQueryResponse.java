@@ -0,0 +1,39 @@
+package com.kevindai.git.helper.mr.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One page of findings, newest first.
+ */
+@Data
+@Builder
+public class FindingQueryResponse {
+    private String status; // success | failure
+    private List<Item> items;
+    private String nextCursor; // pass back as `cursor` for the next page; null on the last page
+    private String message;
+
+    @Data
+    @Builder
+    public static class Item {
+        private Long id;
+        private Long projectId;
+        private Long mrId;
+        private Long mrInfoId;
+        private String severity;
+        private String category;
+        private String title;
+        private String description;
+        private String file;
+        private Integer startLine;
+        private String lineType;
+        private String anchorId;
+        private Double confidence;
+        private Integer status; // 0 = not adopted, 1 = adopted
+        private Instant createdAt;
+    }
+}
@@ -0,0 +1,16 @@
+package com.kevindai.git.helper.mr.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class GitTokenReloadResponse {
+    private String status; // success | failure
+    private int groupTokens;
+    private boolean hasDefault;
+    private Instant loadedAt;
+    private String message;
+}
@@ -0,0 +1,25 @@
+package com.kevindai.git.helper.mr.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of a background MR analysis job.
+ */
+@Data
+@Builder
+public class MrAnalysisJobResponse {
+    private String jobId;
+    private AnalysisStatus status;
+    private String mrUrl;
+    private int totalFiles;
+    private int completedFiles;
+    private int failedFiles;
+    private int findings;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private MrAnalyzeResponse result; // present once the job finished
+    private String errorMessage;      // on failure
+}
@@ -11,5 +11,10 @@ public class MrAnalyzeRequest {
 
     @NotBlank(message = "Merge Request URL must not be blank")
     private String mrUrl;
+
+    /**
+     * When true, the analysis runs in the background and only a job id is returned.
+     */
+    private boolean async;
 }
 
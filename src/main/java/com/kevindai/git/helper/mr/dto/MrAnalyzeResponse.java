@@ -11,4 +11,5 @@ public class MrAnalyzeResponse {
     private String mrUrl;
     private LlmAnalysisReport analysisResult; // LLM result
     private String errorMessage;   // optional on failure
+    private String jobId;          // set when the analysis was submitted as a background job
 }
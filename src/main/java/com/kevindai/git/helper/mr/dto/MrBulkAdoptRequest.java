@@ -0,0 +1,23 @@
+package com.kevindai.git.helper.mr.dto;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@Data
+public class MrBulkAdoptRequest {
+
+    @NotEmpty(message = "detail_ids must not be empty")
+    @Size(max = 200, message = "At most 200 details can be adopted at once")
+    private List<Long> detailIds;
+
+    /**
+     * discussion | draft; defaults to {@code mr.analysis.adopt.mode}.
+     */
+    private AdoptMode mode;
+}
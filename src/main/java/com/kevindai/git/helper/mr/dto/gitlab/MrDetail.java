@@ -16,5 +16,13 @@ public class MrDetail {
     private String source_branch;
     private String sha;
     private String web_url;
+    private DiffRefs diff_refs;
+
+    @Data
+    public static class DiffRefs {
+        private String base_sha;
+        private String head_sha;
+        private String start_sha;
+    }
 }
 
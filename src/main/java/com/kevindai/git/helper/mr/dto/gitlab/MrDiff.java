@@ -16,4 +16,3 @@ public class MrDiff {
     private boolean deleted_file;
     private String diff; // unified diff format
 }
-
@@ -1,6 +1,7 @@
 package com.kevindai.git.helper.mr.prompt.strategy;
 
 import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import com.kevindai.git.helper.mr.util.DiffLineCursor;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -17,23 +18,34 @@ public class MrContext {
     private final Map<String, Integer> removedLinesByExt;
 
     public MrContext(List<MrDiff> diffs) {
+        this(diffs, null);
+    }
+
+    /**
+     * @param lineStats added/removed counts per diff (same order), e.g. taken while annotating;
+     *                  null, or a null element, means count that diff here
+     */
+    public MrContext(List<MrDiff> diffs, List<DiffLineCursor.LineStats> lineStats) {
         this.diffs = diffs == null ? List.of() : List.copyOf(diffs);
         this.fileCountByExt = new HashMap<>();
         this.addedLinesByExt = new HashMap<>();
         this.removedLinesByExt = new HashMap<>();
-        precompute();
+        precompute(lineStats);
     }
 
-    private void precompute() {
-        for (MrDiff d : diffs) {
+    private void precompute(List<DiffLineCursor.LineStats> lineStats) {
+        for (int i = 0; i < diffs.size(); i++) {
+            MrDiff d = diffs.get(i);
             String path = d.getNew_path() != null ? d.getNew_path() : d.getOld_path();
             String ext = StrategyUtils.extensionOf(path);
 
             fileCountByExt.merge(ext, 1, Integer::sum);
 
-            var counts = StrategyUtils.countDiffLines(d.getDiff());
-            addedLinesByExt.merge(ext, counts.added, Integer::sum);
-            removedLinesByExt.merge(ext, counts.removed, Integer::sum);
+            var counts = lineStats != null && i < lineStats.size() && lineStats.get(i) != null
+                    ? lineStats.get(i)
+                    : DiffLineCursor.LineStats.of(d.getDiff());
+            addedLinesByExt.merge(ext, counts.added(), Integer::sum);
+            removedLinesByExt.merge(ext, counts.removed(), Integer::sum);
         }
     }
 
@@ -17,21 +17,6 @@ final class StrategyUtils {
         return name.substring(idx + 1);
     }
 
-    static LineCounts countDiffLines(String diff) {
-        int added = 0, removed = 0;
-        if (diff == null || diff.isEmpty()) return new LineCounts(0, 0);
-        String[] lines = diff.split("\n");
-        for (String line : lines) {
-            if (line.isEmpty()) continue;
-            // Skip diff metadata markers
-            if (line.startsWith("+++") || line.startsWith("---") || line.startsWith("@@")) continue;
-            char c = line.charAt(0);
-            if (c == '+') added++;
-            else if (c == '-') removed++;
-        }
-        return new LineCounts(added, removed);
-    }
-
     static double scoreForExtensions(MrContext ctx, Set<String> exts) {
         double score = 0.0;
         for (String ext : exts) {
@@ -44,15 +29,4 @@ final class StrategyUtils {
         }
         return score;
     }
-
-    static final class LineCounts {
-        final int added;
-        final int removed;
-
-        LineCounts(int added, int removed) {
-            this.added = added;
-            this.removed = removed;
-        }
-    }
 }
-
@@ -1,147 +1,185 @@
 package com.kevindai.git.helper.mr.service;
 
 import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import com.kevindai.git.helper.mr.util.DiffLineCursor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.util.*;
 
+@Slf4j
 @Component
 public class AddressableDiffBuilder {
 
-    public static class AnchorEntry {
-        public String id;          // e.g., A#1
-        public char side;          // 'N' for new/context, 'O' for old
-        public String newPath;
-        public String oldPath;
-        public Integer newLine;    // present for ' ' and '+'
-        public Integer oldLine;    // present for ' ' and '-'
+    /**
+     * Annotated section of one file: {@code --- File: <path> ---} header, annotated diff lines and
+     * the closing {@code ...} line. Anchors of the file are {@code A#firstAnchor} to
+     * {@code A#(firstAnchor + anchorCount - 1)}; {@code firstAnchor} is null when the file has none.
+     * {@code lineStats} are the added/removed counts taken during the same walk.
+     */
+    public record FileSection(String path, MrDiff diff, String content, Integer firstAnchor, int anchorCount,
+                              DiffLineCursor.LineStats lineStats) {
     }
 
     public static class AnnotatedDiff {
-        private final String content;
-        private final Map<String, AnchorEntry> index;
+        private final List<FileSection> sections;
+        private final AnchorIndex index;
+        private volatile String content;
 
-        public AnnotatedDiff(String content, Map<String, AnchorEntry> index) {
+        public AnnotatedDiff(String content, AnchorIndex index) {
+            this.sections = List.of();
             this.content = content;
             this.index = index;
         }
 
-        public String getContent() { return content; }
-        public Map<String, AnchorEntry> getIndex() { return index; }
+        public AnnotatedDiff(List<FileSection> sections, AnchorIndex index) {
+            this.sections = sections;
+            this.index = index;
+        }
+
+        public List<FileSection> getSections() { return sections; }
+        public AnchorIndex getIndex() { return index; }
+
+        /**
+         * Merged content of all sections, derived on first use.
+         */
+        public String getContent() {
+            String c = content;
+            if (c == null) {
+                int size = 0;
+                for (FileSection s : sections) size += s.content().length();
+                StringBuilder sb = new StringBuilder(size);
+                for (FileSection s : sections) sb.append(s.content());
+                c = sb.toString();
+                content = c;
+            }
+            return c;
+        }
     }
 
+    /**
+     * Annotate all diffs in one pass, producing one section per file plus the shared anchor index.
+     * Anchors are numbered in the given order, as {@link #annotator()} does while streaming.
+     */
     public AnnotatedDiff buildAnnotatedWithIndex(List<MrDiff> diffs) {
-        if (diffs == null || diffs.isEmpty()) return new AnnotatedDiff("(No diffs found)", Map.of());
-        // Sort by path to make numbering deterministic per sha
+        if (diffs == null || diffs.isEmpty()) return new AnnotatedDiff("(No diffs found)", AnchorIndex.EMPTY);
+        Annotator annotator = annotator();
+        diffs.forEach(annotator::add);
+        return annotator.finish();
+    }
+
+    /**
+     * Numbering used before diffs were streamed: files sorted by path. Only for rebuilding the anchors
+     * of analyses stored without a diff snapshot, whose anchor ids were assigned this way.
+     */
+    public AnnotatedDiff buildLegacyAnnotatedWithIndex(List<MrDiff> diffs) {
+        if (diffs == null || diffs.isEmpty()) return new AnnotatedDiff("(No diffs found)", AnchorIndex.EMPTY);
         List<MrDiff> sorted = new ArrayList<>(diffs);
         sorted.sort(Comparator.comparing(d -> {
             String p = StringUtils.hasText(d.getNew_path()) ? d.getNew_path() : d.getOld_path();
             return p == null ? "" : p;
         }));
+        return buildAnnotatedWithIndex(sorted);
+    }
 
-        StringBuilder sb = new StringBuilder();
-        Map<String, AnchorEntry> index = new LinkedHashMap<>();
-        int counter = 1;
+    /**
+     * Start an incremental annotation: files are annotated one at a time as they arrive (e.g. while
+     * diff pages are still being fetched), sharing one anchor numbering.
+     */
+    public Annotator annotator() {
+        return new Annotator();
+    }
+
+    /**
+     * Incremental annotator. Not thread-safe; {@link #finish()} builds the anchor index once all
+     * files have been added.
+     */
+    public static final class Annotator {
+        private final List<FileSection> sections = new ArrayList<>();
+        private final AnchorIndex.Builder anchors = new AnchorIndex.Builder();
+
+        private Annotator() {
+        }
 
-        for (MrDiff d : sorted) {
+        public FileSection add(MrDiff d) {
             String newPath = StringUtils.hasText(d.getNew_path()) ? d.getNew_path() : d.getOld_path();
+            StringBuilder sb = new StringBuilder(d.getDiff() == null ? 32 : d.getDiff().length() + (d.getDiff().length() >> 1));
             sb.append("--- File: ").append(newPath).append(" ---\n");
-            if (d.getDiff() == null) { sb.append("...\n"); continue; }
-            counter = annotateOne(sb, d, index, counter);
+            int first = anchors.size() + 1;
+            DiffLineCursor.LineStats stats = d.getDiff() != null ? annotateOne(sb, d, anchors) : DiffLineCursor.LineStats.EMPTY;
             sb.append("...\n");
+            int count = anchors.size() + 1 - first;
+            FileSection section = new FileSection(newPath, d, sb.toString(), count > 0 ? first : null, count, stats);
+            sections.add(section);
+            return section;
         }
-        return new AnnotatedDiff(sb.toString(), index);
-    }
 
-    /**
-     * Extract the annotated diff section for a specific file path from the full annotated content.
-     * The content is produced by buildAnnotatedWithIndex and contains sections like:
-     * --- File: <path> ---\n
-     * ... (diff lines) ...\n
-     * ...\n
-     */
-    public static String sliceAnnotatedForPath(String annotatedContent, String path) {
-        if (annotatedContent == null || path == null) return null;
-        String header = "--- File: " + path + " ---\n";
-        int start = annotatedContent.indexOf(header);
-        if (start < 0) return null;
-        int next = annotatedContent.indexOf("--- File: ", start + header.length());
-        int endDots = annotatedContent.indexOf("...\n", start + header.length());
-        int end = next >= 0 ? Math.min(next, (endDots >= 0 ? endDots + 4 : annotatedContent.length()))
-                : (endDots >= 0 ? endDots + 4 : annotatedContent.length());
-        return annotatedContent.substring(start, end);
+        public int size() {
+            return sections.size();
+        }
+
+        public AnnotatedDiff finish() {
+            if (sections.isEmpty()) return new AnnotatedDiff("(No diffs found)", AnchorIndex.EMPTY);
+            AnchorIndex index = anchors.build();
+            if (log.isDebugEnabled()) {
+                log.debug("Anchor index: {} anchors, ~{} KB (map form ~{} KB)",
+                        index.size(), index.footprintBytes() / 1024, index.mapFootprintBytes() / 1024);
+            }
+            return new AnnotatedDiff(List.copyOf(sections), index);
+        }
     }
 
-    private int annotateOne(StringBuilder out, MrDiff d, Map<String, AnchorEntry> index, int start) {
-        String diff = d.getDiff();
+    private static DiffLineCursor.LineStats annotateOne(StringBuilder out, MrDiff d, AnchorIndex.Builder anchors) {
         String newPath = d.getNew_path();
         String oldPath = d.getOld_path();
         int newLine = 0;
         int oldLine = 0;
-        boolean inHunk = false;
-        String[] lines = diff.split("\n");
-        int counter = start;
-        for (String raw : lines) {
-            if (raw.startsWith("@@")) {
-                // parse hunk header
-                int plusIdx = raw.indexOf('+');
-                int atatIdx = raw.indexOf("@@", 2);
-                if (plusIdx > 0 && atatIdx > plusIdx) {
-                    String seg = raw.substring(plusIdx + 1, atatIdx).trim();
-                    String[] parts = seg.split(","); // c or c,d
-                    try { newLine = Integer.parseInt(parts[0]); } catch (Exception e) { newLine = 1; }
-
-                    int minusIdx = raw.indexOf('-');
-                    if (minusIdx >= 0) {
-                        String segOld = raw.substring(minusIdx + 1, raw.indexOf('+')).trim();
-                        String[] partsOld = segOld.split(",");
-                        try { oldLine = Integer.parseInt(partsOld[0]); } catch (Exception e) { oldLine = 1; }
-                    }
-                    inHunk = true;
-                } else {
-                    inHunk = false;
+        int added = 0;
+        int removed = 0;
+        DiffLineCursor line = new DiffLineCursor(d.getDiff());
+        while (line.next()) {
+            if (line.isAddition()) added++;
+            else if (line.isRemoval()) removed++;
+
+            if (line.isHunkHeader()) {
+                if (line.inHunk()) {
+                    newLine = line.hunkNewStart();
+                    oldLine = line.hunkOldStart();
                 }
-                out.append(raw).append('\n');
+                line.appendLine(out).append('\n');
                 continue;
             }
-            if (!inHunk) { out.append(raw).append('\n'); continue; }
-            if (raw.isEmpty()) { out.append('\n'); continue; }
-            char tag = raw.charAt(0);
-            String content = raw.length() > 1 ? raw.substring(1) : "";
+            if (!line.inHunk()) { line.appendLine(out).append('\n'); continue; }
+            if (line.isEmpty()) { out.append('\n'); continue; }
 
-            switch (tag) {
+            switch (line.tag()) {
                 case ' ': {
-                    String id = "A#" + counter++;
-                    AnchorEntry e = new AnchorEntry();
-                    e.id = id; e.side = 'N'; e.newPath = newPath; e.oldPath = oldPath; e.newLine = newLine; e.oldLine = oldLine;
-                    index.put(id, e);
-                    out.append(' ').append("<<").append(id).append("|N|").append(newPath).append('|').append(newLine).append(">> ").append(content).append('\n');
+                    int n = anchors.add('N', newPath, oldPath, newLine, oldLine);
+                    out.append(' ').append("<<A#").append(n).append("|N|").append(newPath).append('|').append(newLine).append(">> ");
+                    line.appendBody(out).append('\n');
                     newLine++; oldLine++;
                     break;
                 }
                 case '+': {
-                    String id = "A#" + counter++;
-                    AnchorEntry e = new AnchorEntry();
-                    e.id = id; e.side = 'N'; e.newPath = newPath; e.oldPath = oldPath; e.newLine = newLine; e.oldLine = null;
-                    index.put(id, e);
-                    out.append('+').append("<<").append(id).append("|N|").append(newPath).append('|').append(newLine).append(">> ").append(content).append('\n');
+                    int n = anchors.add('N', newPath, oldPath, newLine, AnchorIndex.NO_LINE);
+                    out.append('+').append("<<A#").append(n).append("|N|").append(newPath).append('|').append(newLine).append(">> ");
+                    line.appendBody(out).append('\n');
                     newLine++;
                     break;
                 }
                 case '-': {
-                    String id = "A#" + counter++;
-                    AnchorEntry e = new AnchorEntry();
-                    e.id = id; e.side = 'O'; e.newPath = newPath; e.oldPath = oldPath; e.newLine = null; e.oldLine = oldLine;
-                    index.put(id, e);
-                    out.append('-').append("<<").append(id).append("|O|").append(oldPath).append('|').append(oldLine).append(">> ").append(content).append('\n');
+                    int n = anchors.add('O', newPath, oldPath, AnchorIndex.NO_LINE, oldLine);
+                    out.append('-').append("<<A#").append(n).append("|O|").append(oldPath).append('|').append(oldLine).append(">> ");
+                    line.appendBody(out).append('\n');
                     oldLine++;
                     break;
                 }
                 default:
-                    out.append(raw).append('\n');
+                    line.appendLine(out).append('\n');
             }
         }
-        return counter;
+        // Same walk feeds the +/- counts used for prompt strategy scoring
+        return new DiffLineCursor.LineStats(added, removed);
     }
 }
@@ -0,0 +1,43 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.mr.dto.llm.Finding;
+
+import java.util.List;
+
+/**
+ * Callback for observing the progress of a single MR analysis.
+ * Methods may be invoked from analysis worker threads.
+ */
+public interface AnalysisProgressListener {
+
+    AnalysisProgressListener NOOP = new AnalysisProgressListener() {
+    };
+
+    /**
+     * Called once the diffs are fetched and the number of files to analyze is known.
+     */
+    default void onStarted(int totalFiles) {
+    }
+
+    /**
+     * Called for each finding as soon as the model has produced it, before it is persisted (no id
+     * yet; its location is as the model reported it). With {@code mr.analysis.llm-output.streaming}
+     * this happens while the response is still arriving, possibly before {@link #onStarted(int)}.
+     */
+    default void onFindingParsed(Finding finding) {
+    }
+
+    /**
+     * Called after the LLM analysis of one file finished (successfully or not).
+     */
+    default void onFileDone(String path, int findings, boolean success) {
+    }
+
+    /**
+     * Called after one file finished, with the findings persisted for it (ids set, so they can be
+     * adopted right away). Defaults to {@link #onFileDone(String, int, boolean)}.
+     */
+    default void onFileDone(String path, List<Finding> findings, boolean success) {
+        onFileDone(path, findings.size(), success);
+    }
+}
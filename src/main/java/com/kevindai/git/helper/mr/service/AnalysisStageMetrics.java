@@ -0,0 +1,41 @@
+package com.kevindai.git.helper.mr.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Records per-stage timings of the MR analysis pipeline as {@code mr.analysis.stage}
+ * timers tagged with the stage name.
+ */
+@Component
+@RequiredArgsConstructor
+public class AnalysisStageMetrics {
+
+    public static final String FETCH = "fetch";
+    public static final String PREPARE = "prepare";
+    public static final String ANNOTATE = "annotate";
+    public static final String LLM = "llm";
+    public static final String PERSIST = "persist";
+    public static final String FINALIZE = "finalize";
+
+    private final MeterRegistry meterRegistry;
+
+    public <T> T time(String stage, Supplier<T> action) {
+        return timer(stage).record(action);
+    }
+
+    public void time(String stage, Runnable action) {
+        timer(stage).record(action);
+    }
+
+    private Timer timer(String stage) {
+        return Timer.builder("mr.analysis.stage")
+                .description("Duration of one MR analysis pipeline stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,252 @@
+package com.kevindai.git.helper.mr.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Anchor index of one annotated MR: anchor {@code A#n} (numbered from 1, contiguous) to its file and
+ * line on the old or new side.
+ * <p>
+ * Stored as parallel primitive arrays plus a table of distinct paths, so an MR with tens of thousands
+ * of diff lines costs a few hundred KB instead of one map entry, entry object, id string and boxed
+ * line numbers per line. Lookup parses the numeric part of the id and indexes the arrays directly;
+ * {@link Anchor} views are created per lookup only.
+ */
+public final class AnchorIndex {
+
+    public static final AnchorIndex EMPTY = new Builder().build();
+
+    /**
+     * Line number value for "no line on this side" when adding to a {@link Builder}.
+     */
+    public static final int NO_LINE = -1;
+
+    private static final int NONE = -1;
+
+    private final int size;
+    private final byte[] sides;
+    private final int[] newLines;
+    private final int[] oldLines;
+    private final int[] newPathIds;
+    private final int[] oldPathIds;
+    private final String[] paths;
+
+    /**
+     * Resolved anchor. {@code newLine} is present for context and added lines, {@code oldLine} for
+     * context and removed lines.
+     */
+    public record Anchor(int number, char side, String newPath, String oldPath, Integer newLine, Integer oldLine) {
+
+        public String id() {
+            return "A#" + number;
+        }
+
+        /**
+         * File the anchor points at on its own side.
+         */
+        public String path() {
+            return side == 'N' ? newPath : oldPath;
+        }
+
+        public Integer line() {
+            return side == 'N' ? newLine : oldLine;
+        }
+
+        public String lineType() {
+            return side == 'N' ? "new_line" : "old_line";
+        }
+    }
+
+    private AnchorIndex(int size, byte[] sides, int[] newLines, int[] oldLines,
+                        int[] newPathIds, int[] oldPathIds, String[] paths) {
+        this.size = size;
+        this.sides = sides;
+        this.newLines = newLines;
+        this.oldLines = oldLines;
+        this.newPathIds = newPathIds;
+        this.oldPathIds = oldPathIds;
+        this.paths = paths;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Anchor get(String anchorId) {
+        return get(parseNumber(anchorId));
+    }
+
+    public Anchor get(int number) {
+        if (number < 1 || number > size) {
+            return null;
+        }
+        int i = number - 1;
+        return new Anchor(number,
+                (char) sides[i],
+                pathAt(newPathIds[i]),
+                pathAt(oldPathIds[i]),
+                newLines[i] == NO_LINE ? null : newLines[i],
+                oldLines[i] == NO_LINE ? null : oldLines[i]);
+    }
+
+    /**
+     * Numeric part of {@code A#n}, or -1 when the id is not in that form.
+     */
+    public static int parseNumber(String anchorId) {
+        if (anchorId == null || anchorId.length() < 3 || anchorId.length() > 12
+                || anchorId.charAt(0) != 'A' || anchorId.charAt(1) != '#') {
+            return -1;
+        }
+        long n = 0;
+        for (int i = 2; i < anchorId.length(); i++) {
+            char c = anchorId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n > Integer.MAX_VALUE ? -1 : (int) n;
+    }
+
+    /**
+     * Approximate retained size in bytes (arrays plus the distinct path strings).
+     */
+    public long footprintBytes() {
+        return 16L + arrayBytes(sides.length, 1) + 4 * arrayBytes(newLines.length, 4) + pathTableBytes();
+    }
+
+    /**
+     * Approximate retained size of the same anchors held as a {@code LinkedHashMap<String, entry>}
+     * with a string id, an entry object and boxed line numbers per anchor (paths shared).
+     */
+    public long mapFootprintBytes() {
+        long perAnchor = 40            // LinkedHashMap.Entry
+                + 8                    // table slot (at 0.75 load factor, rounded)
+                + 24 + 24              // id String + its byte[]
+                + 32                   // entry object: side + two path refs + two line refs
+                + 2 * 16;              // boxed line numbers (mostly above the Integer cache)
+        return 56L + perAnchor * size + pathTableBytes();
+    }
+
+    private long pathTableBytes() {
+        long bytes = arrayBytes(paths.length, 4);
+        for (String p : paths) {
+            bytes += 24 + arrayBytes(p.length(), 1);
+        }
+        return bytes;
+    }
+
+    /**
+     * Binary form used by {@link DiffSnapshot}: size, path table, then one column per array.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(paths.length);
+        for (String p : paths) {
+            out.writeUTF(p);
+        }
+        out.write(sides);
+        for (int[] column : new int[][]{newLines, oldLines, newPathIds, oldPathIds}) {
+            for (int v : column) {
+                out.writeInt(v);
+            }
+        }
+    }
+
+    static AnchorIndex readFrom(DataInput in) throws IOException {
+        int size = in.readInt();
+        String[] paths = new String[in.readInt()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = in.readUTF();
+        }
+        byte[] sides = new byte[size];
+        in.readFully(sides);
+        int[][] columns = new int[4][size];
+        for (int[] column : columns) {
+            for (int i = 0; i < size; i++) {
+                column[i] = in.readInt();
+            }
+        }
+        return new AnchorIndex(size, sides, columns[0], columns[1], columns[2], columns[3], paths);
+    }
+
+    private String pathAt(int id) {
+        return id == NONE ? null : paths[id];
+    }
+
+    private static long arrayBytes(int length, int elementSize) {
+        return (16L + (long) length * elementSize + 7) & ~7L;
+    }
+
+    /**
+     * Appends anchors in number order ({@code A#1}, {@code A#2}, ...). Not thread-safe.
+     */
+    public static final class Builder {
+        private int size;
+        private byte[] sides = new byte[256];
+        private int[] newLines = new int[256];
+        private int[] oldLines = new int[256];
+        private int[] newPathIds = new int[256];
+        private int[] oldPathIds = new int[256];
+        private final Map<String, Integer> pathIds = new HashMap<>();
+        private String[] paths = new String[16];
+
+        /**
+         * Add the next anchor and return its number. Use {@link #NO_LINE} for an absent line.
+         */
+        public int add(char side, String newPath, String oldPath, int newLine, int oldLine) {
+            if (size == sides.length) {
+                int cap = size + (size >> 1);
+                sides = Arrays.copyOf(sides, cap);
+                newLines = Arrays.copyOf(newLines, cap);
+                oldLines = Arrays.copyOf(oldLines, cap);
+                newPathIds = Arrays.copyOf(newPathIds, cap);
+                oldPathIds = Arrays.copyOf(oldPathIds, cap);
+            }
+            sides[size] = (byte) side;
+            newLines[size] = newLine;
+            oldLines[size] = oldLine;
+            newPathIds[size] = pathId(newPath);
+            oldPathIds[size] = pathId(oldPath);
+            return ++size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public AnchorIndex build() {
+            return new AnchorIndex(size,
+                    Arrays.copyOf(sides, size),
+                    Arrays.copyOf(newLines, size),
+                    Arrays.copyOf(oldLines, size),
+                    Arrays.copyOf(newPathIds, size),
+                    Arrays.copyOf(oldPathIds, size),
+                    Arrays.copyOf(paths, pathIds.size()));
+        }
+
+        private int pathId(String path) {
+            if (path == null) {
+                return NONE;
+            }
+            Integer id = pathIds.get(path);
+            if (id == null) {
+                id = pathIds.size();
+                if (id == paths.length) {
+                    paths = Arrays.copyOf(paths, id * 2);
+                }
+                paths[id] = path;
+                pathIds.put(path, id);
+            }
+            return id;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * What adopting a finding needs from an analyzed sha: the diff refs to position a discussion, the
+ * per-file new/deleted flags and the anchor index. Persisted gzip-compressed per mr_info row so adopt
+ * does not have to re-fetch and re-annotate the MR diff.
+ */
+public final class DiffSnapshot {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final DiffRefs refs;
+    private final List<FileEntry> files;
+    private final AnchorIndex index;
+
+    public record DiffRefs(String baseSha, String startSha, String headSha) {
+
+        public boolean isComplete() {
+            return baseSha != null && startSha != null && headSha != null;
+        }
+    }
+
+    public record FileEntry(String newPath, String oldPath, boolean newFile, boolean deletedFile) {
+    }
+
+    public DiffSnapshot(DiffRefs refs, List<FileEntry> files, AnchorIndex index) {
+        this.refs = refs;
+        this.files = files;
+        this.index = index;
+    }
+
+    public static DiffSnapshot of(DiffRefs refs, AddressableDiffBuilder.AnnotatedDiff annotated) {
+        List<FileEntry> files = new ArrayList<>(annotated.getSections().size());
+        for (AddressableDiffBuilder.FileSection section : annotated.getSections()) {
+            MrDiff d = section.diff();
+            files.add(new FileEntry(d.getNew_path(), d.getOld_path(), d.isNew_file(), d.isDeleted_file()));
+        }
+        return new DiffSnapshot(refs, List.copyOf(files), annotated.getIndex());
+    }
+
+    public DiffRefs refs() {
+        return refs;
+    }
+
+    public AnchorIndex index() {
+        return index;
+    }
+
+    /**
+     * File whose new or old path is {@code path}, or null.
+     */
+    public FileEntry file(String path) {
+        if (path == null) {
+            return null;
+        }
+        for (FileEntry f : files) {
+            if (path.equals(f.newPath()) || path.equals(f.oldPath())) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(256, index.size() * 4));
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeByte(FORMAT_VERSION);
+            writeNullable(out, refs.baseSha());
+            writeNullable(out, refs.startSha());
+            writeNullable(out, refs.headSha());
+            out.writeInt(files.size());
+            for (FileEntry f : files) {
+                writeNullable(out, f.newPath());
+                writeNullable(out, f.oldPath());
+                out.writeByte((f.newFile() ? 1 : 0) | (f.deletedFile() ? 2 : 0));
+            }
+            index.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static DiffSnapshot decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(payload)))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported diff snapshot version: " + version);
+            }
+            DiffRefs refs = new DiffRefs(readNullable(in), readNullable(in), readNullable(in));
+            int fileCount = in.readInt();
+            List<FileEntry> files = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                String newPath = readNullable(in);
+                String oldPath = readNullable(in);
+                int flags = in.readUnsignedByte();
+                files.add(new FileEntry(newPath, oldPath, (flags & 1) != 0, (flags & 2) != 0));
+            }
+            return new DiffSnapshot(refs, List.copyOf(files), AnchorIndex.readFrom(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,56 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Caps in-flight calls per remote endpoint with fair semaphores. This is what bounds
+ * concurrency when the analysis executor runs on virtual threads. LLM calls are limited
+ * adaptively by {@link LlmConcurrencyLimiter} instead.
+ */
+@Component
+public class EndpointConcurrencyLimiter {
+
+    public enum Endpoint {
+        GITLAB
+    }
+
+    private final Map<Endpoint, Semaphore> permits = new EnumMap<>(Endpoint.class);
+
+    public EndpointConcurrencyLimiter(MrAnalysisProperties properties, MeterRegistry meterRegistry) {
+        register(Endpoint.GITLAB, properties.getConcurrency().getGitlabPermits(), meterRegistry);
+    }
+
+    public <T> T call(Endpoint endpoint, Supplier<T> action) {
+        Semaphore semaphore = permits.get(endpoint);
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + endpoint + " permit", e);
+        }
+        try {
+            return action.get();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private void register(Endpoint endpoint, int size, MeterRegistry meterRegistry) {
+        Semaphore semaphore = new Semaphore(Math.max(1, size), true);
+        permits.put(endpoint, semaphore);
+        Gauge.builder("mr.endpoint.permits.available", semaphore, Semaphore::availablePermits)
+                .tag("endpoint", endpoint.name().toLowerCase())
+                .register(meterRegistry);
+        Gauge.builder("mr.endpoint.permits.waiting", semaphore, Semaphore::getQueueLength)
+                .tag("endpoint", endpoint.name().toLowerCase())
+                .register(meterRegistry);
+    }
+}
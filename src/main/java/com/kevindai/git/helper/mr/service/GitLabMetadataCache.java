@@ -0,0 +1,81 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.mr.dto.gitlab.MrDetail;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-process caches for GitLab metadata, with single-flight loading: concurrent callers
+ * asking for the same key wait on one HTTP call instead of issuing their own.
+ * <p>
+ * Loads run on the calling thread, so they keep the caller's {@link GitLabRequestContext}. Failed
+ * or empty loads are not cached. Meters: {@code cache.gets} (hit/miss), {@code cache.evictions},
+ * {@code cache.size}, tagged {@code cache} = gitlab.project-id | gitlab.mr-detail.
+ * <p>
+ * MR versions are deliberately not cached: adopt reads them to verify that the MR head is still the
+ * analyzed sha, and a cached answer would hide exactly the push that check exists to catch.
+ */
+@Component
+public class GitLabMetadataCache {
+
+    public record MrKey(long projectId, int mrId) {
+    }
+
+    private final AsyncCache<String, Long> projectIds;
+    private final AsyncCache<MrKey, MrDetail> mrDetails;
+
+    public GitLabMetadataCache(MrAnalysisProperties properties, MeterRegistry meterRegistry) {
+        MrAnalysisProperties.GitlabCache cfg = properties.getGitlabCache();
+        this.projectIds = build(cfg.getProjectIdMaxEntries(), cfg.getProjectIdTtl(), "gitlab.project-id", meterRegistry);
+        this.mrDetails = build(cfg.getMrDetailMaxEntries(), cfg.getMrDetailTtl(), "gitlab.mr-detail", meterRegistry);
+    }
+
+    public Long projectId(String fullPath, Supplier<Long> loader) {
+        return load(projectIds, fullPath, loader);
+    }
+
+    public MrDetail mrDetail(MrKey key, Supplier<MrDetail> loader) {
+        return load(mrDetails, key, loader);
+    }
+
+    private static <K, V> AsyncCache<K, V> build(long maxEntries, Duration ttl, String name, MeterRegistry meterRegistry) {
+        AsyncCache<K, V> cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxEntries))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        return cache;
+    }
+
+    private static <K, V> V load(AsyncCache<K, V> cache, K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> shared = cache.get(key, (k, executor) -> mine);
+        if (shared == mine) {
+            try {
+                // null completes the entry but Caffeine drops it, like a failed load
+                mine.complete(loader.get());
+            } catch (RuntimeException | Error e) {
+                mine.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return shared.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+}
@@ -2,31 +2,72 @@ package com.kevindai.git.helper.mr.service;
 
 import org.springframework.stereotype.Component;
 
+import java.util.function.Supplier;
+
+/**
+ * GitLab access context (group path + token) for the call currently being executed.
+ * <p>
+ * The context is immutable and bound for the duration of {@link #callWith}/{@link #runWith} only.
+ * It is not inherited by new threads; tasks handed to executors must be wrapped with
+ * {@link #wrap(Runnable)} (the analysis executors do this through a task decorator), which captures
+ * the caller's context at submit time. This keeps pooled and virtual threads from seeing a stale
+ * token from a previous analysis.
+ */
 @Component
 public class GitLabRequestContext {
 
-    private final InheritableThreadLocal<String> groupFullPath = new InheritableThreadLocal<>();
-    private final InheritableThreadLocal<String> token = new InheritableThreadLocal<>();
+    public record Scope(String groupFullPath, String token) {
+    }
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
 
-    public void setGroupFullPath(String value) {
-        groupFullPath.set(value);
+    public <T> T callWith(Scope scope, Supplier<T> action) {
+        Scope previous = CURRENT.get();
+        CURRENT.set(scope);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
     }
 
-    public String getGroupFullPath() {
-        return groupFullPath.get();
+    public void runWith(Scope scope, Runnable action) {
+        callWith(scope, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public Scope current() {
+        return CURRENT.get();
     }
 
-    public void setToken(String value) {
-        token.set(value);
+    public String getGroupFullPath() {
+        Scope scope = CURRENT.get();
+        return scope == null ? null : scope.groupFullPath();
     }
 
     public String getToken() {
-        return token.get();
+        Scope scope = CURRENT.get();
+        return scope == null ? null : scope.token();
     }
 
-    public void clear() {
-        groupFullPath.remove();
-        token.remove();
+    /**
+     * Capture the current context so the task runs with it on whatever thread executes it.
+     */
+    public Runnable wrap(Runnable task) {
+        Scope captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> runWith(captured, task);
     }
-}
 
+    private static void restore(Scope previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
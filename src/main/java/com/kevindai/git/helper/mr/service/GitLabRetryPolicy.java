@@ -0,0 +1,219 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Timeouts and retry decisions for GitLab API calls.
+ * <ul>
+ *   <li>Calls are classified into {@link Operation}s, each with its own response timeout.</li>
+ *   <li>Retries use exponential backoff with full jitter; a {@code Retry-After} header takes
+ *       precedence (plus a little jitter so throttled callers do not return in lockstep).</li>
+ *   <li>A 429, or {@code RateLimit-Remaining: 0}, pauses every call made with the same token until
+ *       the advertised reset instead of letting concurrent callers each run into the limit. GitLab
+ *       limits per user, so other tokens keep going.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class GitLabRetryPolicy {
+
+    public enum Operation {
+        METADATA,
+        DIFF,
+        WRITE
+    }
+
+    private final MrAnalysisProperties.GitlabHttp cfg;
+    private final Clock clock;
+    private final DoubleSupplier jitter;
+    // Token -> end of its throttle pause (epoch millis); entries are dropped once the pause is over
+    private final Map<String, Long> pausedUntilMillis = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public GitLabRetryPolicy(MrAnalysisProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Clock.systemUTC(), () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    GitLabRetryPolicy(MrAnalysisProperties properties, MeterRegistry meterRegistry, Clock clock, DoubleSupplier jitter) {
+        this.cfg = properties.getGitlabHttp();
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.jitter = jitter;
+    }
+
+    public Operation classify(HttpMethod method, URI uri) {
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            return Operation.WRITE;
+        }
+        String path = uri.getRawPath();
+        if (path != null && (path.endsWith("/diffs") || path.endsWith("/repository/compare"))) {
+            return Operation.DIFF;
+        }
+        return Operation.METADATA;
+    }
+
+    public Duration responseTimeout(Operation operation) {
+        return switch (operation) {
+            case METADATA -> cfg.getMetadataTimeout();
+            case DIFF -> cfg.getDiffTimeout();
+            case WRITE -> cfg.getWriteTimeout();
+        };
+    }
+
+    /**
+     * Delay before retrying a call made with {@code token} that got {@code status}, or {@code null}
+     * when it must not be retried. Also records rate-limit state advertised by the response.
+     */
+    public Duration retryDelay(HttpMethod method, String token, HttpStatusCode status, HttpHeaders headers, int attempt) {
+        Duration retryAfter = status.value() == 429 || status.value() == 503 ? retryAfter(headers) : null;
+        if (status.value() == 429) {
+            pauseFor(token, retryAfter != null ? retryAfter : backoff(attempt));
+        } else {
+            notePressure(token, headers);
+        }
+        boolean retryable = status.value() == 429
+                || (isIdempotent(method) && (status.value() == 502 || status.value() == 503 || status.value() == 504));
+        if (!retryable || attempt >= cfg.getMaxAttempts()) {
+            return null;
+        }
+        if (retryAfter != null && retryAfter.compareTo(cfg.getMaxRetryAfter()) > 0) {
+            log.warn("GitLab asked to retry after {}, above the {} limit; giving up", retryAfter, cfg.getMaxRetryAfter());
+            return null;
+        }
+        count(String.valueOf(status.value()));
+        Duration delay = retryAfter != null ? retryAfter.plus(jittered(cfg.getInitialBackoff())) : backoff(attempt);
+        return max(delay, remainingPause(token));
+    }
+
+    /**
+     * Delay before retrying a call that failed with an I/O error (timeout, reset), or {@code null}.
+     * Writes are not retried: GitLab may have applied them.
+     */
+    public Duration retryDelay(HttpMethod method, String token, IOException error, int attempt) {
+        if (!isIdempotent(method) || attempt >= cfg.getMaxAttempts()) {
+            return null;
+        }
+        count("io");
+        return max(backoff(attempt), remainingPause(token));
+    }
+
+    /**
+     * Time left on the throttle pause of {@code token}; callers wait this long before the next attempt.
+     */
+    public Duration remainingPause(String token) {
+        String key = key(token);
+        Long until = pausedUntilMillis.get(key);
+        if (until == null) {
+            return Duration.ZERO;
+        }
+        long left = until - clock.millis();
+        if (left <= 0) {
+            pausedUntilMillis.remove(key, until);
+            return Duration.ZERO;
+        }
+        return Duration.ofMillis(left);
+    }
+
+    /**
+     * Full-jitter exponential backoff: uniform in [0, min(max, initial * 2^(attempt-1))].
+     */
+    Duration backoff(int attempt) {
+        long initial = Math.max(1, cfg.getInitialBackoff().toMillis());
+        long cap = Math.max(initial, cfg.getMaxBackoff().toMillis());
+        long exp = attempt >= 31 ? cap : Math.min(cap, initial << Math.max(0, attempt - 1));
+        return jittered(Duration.ofMillis(exp));
+    }
+
+    private Duration jittered(Duration upTo) {
+        return Duration.ofMillis((long) (upTo.toMillis() * jitter.getAsDouble()));
+    }
+
+    /**
+     * {@code Retry-After} as delta-seconds or HTTP date; {@code null} when absent or malformed.
+     */
+    Duration retryAfter(HttpHeaders headers) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        value = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            Instant at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return max(Duration.between(clock.instant(), at), Duration.ZERO);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * GitLab sends {@code RateLimit-Remaining} / {@code RateLimit-Reset} (epoch seconds) on
+     * throttled endpoints; once the budget is exhausted, hold further calls until the reset.
+     */
+    private void notePressure(String token, HttpHeaders headers) {
+        String remaining = headers.getFirst("RateLimit-Remaining");
+        String reset = headers.getFirst("RateLimit-Reset");
+        if (!"0".equals(remaining == null ? null : remaining.trim()) || reset == null) {
+            return;
+        }
+        try {
+            long resetMillis = Long.parseLong(reset.trim()) * 1000;
+            Duration until = Duration.ofMillis(resetMillis - clock.millis());
+            if (!until.isNegative() && until.compareTo(cfg.getMaxRetryAfter()) <= 0) {
+                pauseFor(token, until);
+            }
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    private void pauseFor(String token, Duration duration) {
+        long until = clock.millis() + Math.min(duration.toMillis(), cfg.getMaxRetryAfter().toMillis());
+        pausedUntilMillis.merge(key(token), until, Math::max);
+    }
+
+    // Calls without a token share one (anonymous) limit
+    private static String key(String token) {
+        return token == null ? "" : token;
+    }
+
+    private void count(String reason) {
+        Counter.builder("gitlab.http.retries")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static boolean isIdempotent(HttpMethod method) {
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)
+                || HttpMethod.PUT.equals(method) || HttpMethod.DELETE.equals(method);
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+}
@@ -1,21 +1,30 @@
 package com.kevindai.git.helper.mr.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kevindai.git.helper.config.GitConfig;
+import com.kevindai.git.helper.config.MrAnalysisProperties;
 import com.kevindai.git.helper.mr.dto.ParsedMrUrl;
 import com.kevindai.git.helper.mr.dto.gitlab.*;
 import com.kevindai.git.helper.mr.util.GitLabUrlParser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -25,6 +34,9 @@ public class GitLabService {
     private final GitConfig gitConfig;
     private final RestClient restClient;
     private final GitLabUrlParser urlParser;
+    private final GitLabMetadataCache metadataCache;
+    private final MrAnalysisProperties properties;
+    private final ObjectMapper objectMapper;
 
     // Centralized MR URL parsing
     public ParsedMrUrl parseMrUrl(String mrUrl) {
@@ -79,6 +91,10 @@ public class GitLabService {
      */
     public long resolveProjectId(String groupFullPath, String projectPath) {
         String full = (groupFullPath == null || groupFullPath.isBlank()) ? projectPath : groupFullPath + "/" + projectPath;
+        return metadataCache.projectId(full, () -> loadProjectId(full, groupFullPath, projectPath));
+    }
+
+    private long loadProjectId(String full, String groupFullPath, String projectPath) {
         try {
             String encoded = java.net.URLEncoder.encode(full, java.nio.charset.StandardCharsets.UTF_8);
             Project project = restClient.get()
@@ -103,14 +119,25 @@ public class GitLabService {
         }
     }
 
+    /**
+     * MR details, shared for a few seconds between concurrent callers (mr.analysis.gitlab-cache.mr-detail-ttl).
+     */
     public MrDetail fetchMrDetails(long projectId, int mrId) {
+        return metadataCache.mrDetail(new GitLabMetadataCache.MrKey(projectId, mrId), () -> loadMrDetails(projectId, mrId));
+    }
+
+    private MrDetail loadMrDetails(long projectId, int mrId) {
         return restClient.get().uri(gitConfig.getUrl() + "/projects/{pid}/merge_requests/{mr}", Map.of("pid", projectId, "mr", mrId))
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
                 .body(MrDetail.class);
     }
 
-    public List<MrDiff> fetchMrDiffs(long projectId, int mrId) {
+    /**
+     * Unpaginated {@code /diffs} request, i.e. GitLab's default first page only. Analyses stored
+     * without a diff snapshot numbered their anchors over exactly this list.
+     */
+    public List<MrDiff> fetchMrDiffsFirstPage(long projectId, int mrId) {
         MrDiff[] diffs = restClient.get()
                 .uri(gitConfig.getUrl() + "/projects/{pid}/merge_requests/{mr}/diffs", Map.of("pid", projectId, "mr", mrId))
                 .accept(MediaType.APPLICATION_JSON)
@@ -119,6 +146,71 @@ public class GitLabService {
         return diffs == null ? List.of() : Arrays.asList(diffs);
     }
 
+    /**
+     * All diffs of the MR, in GitLab order. Prefer {@link #streamMrDiffs} when files can be
+     * processed as they arrive.
+     */
+    public List<MrDiff> fetchMrDiffs(long projectId, int mrId) {
+        List<MrDiff> diffs = new ArrayList<>();
+        streamMrDiffs(projectId, mrId, diffs::add);
+        return diffs;
+    }
+
+    /**
+     * Read the MR diffs page by page ({@code /diffs} is paginated) and hand each file to {@code sink}
+     * as soon as it is parsed. Pages are read with a streaming JSON parser, so only the current file
+     * is materialized. {@code sink} runs on the calling thread while the page is being read.
+     *
+     * @return number of files delivered
+     */
+    public int streamMrDiffs(long projectId, int mrId, Consumer<MrDiff> sink) {
+        MrAnalysisProperties.Diffs cfg = properties.getDiffs();
+        int perPage = Math.clamp(cfg.getPerPage(), 1, 100);
+        int total = 0;
+        int pages = 0;
+        int page = 1;
+        while (page > 0) {
+            if (++pages > cfg.getMaxPages()) {
+                log.warn("Stopped reading MR diffs after {} pages. projectId={}, mrId={}, files={}",
+                        cfg.getMaxPages(), projectId, mrId, total);
+                break;
+            }
+            DiffPage result = restClient.get()
+                    .uri(gitConfig.getUrl() + "/projects/{pid}/merge_requests/{mr}/diffs?page={page}&per_page={pp}",
+                            Map.of("pid", projectId, "mr", mrId, "page", page, "pp", perPage))
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange((request, response) -> readDiffPage(response, sink));
+            total += result.files();
+            page = result.nextPage();
+        }
+        return total;
+    }
+
+    private record DiffPage(int files, int nextPage) {
+    }
+
+    private DiffPage readDiffPage(ClientHttpResponse response, Consumer<MrDiff> sink) throws IOException {
+        if (response.getStatusCode().isError()) {
+            throw new RestClientResponseException("Failed to read MR diffs: " + response.getStatusCode(),
+                    response.getStatusCode(), response.getStatusText(), response.getHeaders(),
+                    response.getBody().readAllBytes(), null);
+        }
+        int files = 0;
+        try (JsonParser parser = objectMapper.createParser(response.getBody())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("Unexpected MR diffs payload: " + parser.currentToken());
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                sink.accept(objectMapper.readValue(parser, MrDiff.class));
+                files++;
+            }
+        }
+        // X-Next-Page is empty on the last page; without the header the response is not paginated
+        String next = response.getHeaders().getFirst("X-Next-Page");
+        int nextPage = next == null || next.isBlank() ? 0 : Integer.parseInt(next.trim());
+        return new DiffPage(files, nextPage);
+    }
+
     public List<MrVersion> fetchMrVersions(long projectId, int mrId) {
         MrVersion[] versions = restClient.get()
                 .uri(gitConfig.getUrl() + "/projects/{pid}/merge_requests/{mr}/versions", Map.of("pid", projectId, "mr", mrId))
@@ -153,6 +245,56 @@ public class GitLabService {
                                    Integer newLine,
                                    Integer oldLine,
                                    String body) {
+        MultiValueMap<String, String> form = positionForm(baseSha, headSha, startSha, filePath, newLine, oldLine);
+        form.add("body", body == null ? "" : body);
+
+        restClient.post()
+                .uri(gitConfig.getUrl() + "/projects/{pid}/merge_requests/{mr}/discussions", Map.of("pid", projectId, "mr", mrId))
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(form)
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    /**
+     * Create a positioned draft note; it stays invisible to others until published.
+     */
+    public void createMrDraftNote(long projectId,
+                                  int mrId,
+                                  String baseSha,
+                                  String headSha,
+                                  String startSha,
+                                  String filePath,
+                                  Integer newLine,
+                                  Integer oldLine,
+                                  String body) {
+        MultiValueMap<String, String> form = positionForm(baseSha, headSha, startSha, filePath, newLine, oldLine);
+        form.add("note", body == null ? "" : body);
+
+        restClient.post()
+                .uri(gitConfig.getUrl() + "/projects/{pid}/merge_requests/{mr}/draft_notes", Map.of("pid", projectId, "mr", mrId))
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(form)
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    /**
+     * Publish all pending draft notes of the token's user on the MR in one event.
+     */
+    public void publishMrDraftNotes(long projectId, int mrId) {
+        restClient.post()
+                .uri(gitConfig.getUrl() + "/projects/{pid}/merge_requests/{mr}/draft_notes/bulk_publish", Map.of("pid", projectId, "mr", mrId))
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    private static MultiValueMap<String, String> positionForm(String baseSha,
+                                                              String headSha,
+                                                              String startSha,
+                                                              String filePath,
+                                                              Integer newLine,
+                                                              Integer oldLine) {
         MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
         form.add("position[position_type]", "text");
         form.add("position[base_sha]", baseSha);
@@ -166,15 +308,6 @@ public class GitLabService {
         if (oldLine != null) {
             form.add("position[old_line]", String.valueOf(oldLine));
         }
-        form.add("body", body == null ? "" : body);
-
-        restClient.post()
-                .uri(gitConfig.getUrl() + "/projects/{pid}/merge_requests/{mr}/discussions", Map.of("pid", projectId, "mr", mrId))
-                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
-                .body(form)
-                .retrieve()
-                .toBodilessEntity();
+        return form;
     }
-
-
 }
@@ -0,0 +1,117 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token-bucket scheduler for GitLab requests, one bucket per token label: every git_token row is a
+ * GitLab user or bot with its own rate limit, so an MR analysis and concurrent adopts sharing a
+ * token must share its budget. Buckets are keyed by label ({@code git_token:<id>}), not by the token
+ * itself, so a rotated token keeps its bucket and meters and no token strings are retained; tokens
+ * without a git_token row (the configured one, request-supplied ones) share the {@code config}
+ * bucket.
+ * <p>
+ * Callers reserve the next slot and sleep until it is due, so a burst queues up in arrival order
+ * instead of running into 429s. Rates come from {@code git_token.rate_per_second / burst}, else
+ * {@code mr.analysis.tokens.default-*}, and are re-read on every request, so a token reload applies
+ * immediately. Meters are tagged with the same label, never with the token itself.
+ */
+@Component
+public class GitLabTokenScheduler {
+
+    private final MrAnalysisProperties.Tokens cfg;
+    private final GitTokenService tokenService;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public GitLabTokenScheduler(MrAnalysisProperties properties, GitTokenService tokenService, MeterRegistry meterRegistry) {
+        this.cfg = properties.getTokens();
+        this.tokenService = tokenService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Wait for the token's next request slot. Throws when the wait would exceed
+     * {@code mr.analysis.tokens.max-queue-wait}.
+     */
+    public void acquire(String token) {
+        if (!cfg.isRateLimitEnabled() || token == null || token.isBlank()) {
+            return;
+        }
+        GitTokenService.TokenInfo info = tokenService.tokenInfo(token);
+        Bucket bucket = buckets.computeIfAbsent(info.label(), label -> new Bucket(label, meterRegistry));
+        double rate = info.ratePerSecond() != null && info.ratePerSecond() > 0 ? info.ratePerSecond() : cfg.getDefaultRatePerSecond();
+        int burst = info.burst() != null && info.burst() > 0 ? info.burst() : cfg.getDefaultBurst();
+
+        long waitNanos = bucket.reserve(Math.max(0.001, rate), Math.max(1, burst), System.nanoTime(), cfg.getMaxQueueWait().toNanos());
+        if (waitNanos < 0) {
+            bucket.rejected.increment();
+            throw new IllegalStateException("GitLab request queue for " + info.label() + " is full (wait above "
+                    + cfg.getMaxQueueWait() + " at " + rate + " req/s)");
+        }
+        bucket.waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+        if (waitNanos == 0) {
+            return;
+        }
+        bucket.waiting.incrementAndGet();
+        try {
+            Thread.sleep(Duration.ofNanos(waitNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queued for " + info.label(), e);
+        } finally {
+            bucket.waiting.decrementAndGet();
+        }
+    }
+
+    static final class Bucket {
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final Timer waitTimer;
+        private final Counter rejected;
+        private double permits = Double.NaN;
+        private long updatedAt;
+
+        Bucket(String label, MeterRegistry meterRegistry) {
+            Gauge.builder("gitlab.token.queue.depth", waiting, AtomicInteger::get)
+                    .tag("token", label)
+                    .register(meterRegistry);
+            this.waitTimer = Timer.builder("gitlab.token.queue.wait")
+                    .tag("token", label)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("gitlab.token.queue.rejected")
+                    .tag("token", label)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Reserve one request at {@code now} and return how long the caller must wait, or -1 when
+         * that exceeds {@code maxWaitNanos} (nothing is reserved then). Permits may go negative:
+         * the debt is what makes later callers queue behind earlier ones.
+         */
+        synchronized long reserve(double ratePerSecond, int burst, long now, long maxWaitNanos) {
+            if (Double.isNaN(permits)) {
+                permits = burst;
+                updatedAt = now;
+            } else if (now > updatedAt) {
+                permits = Math.min(burst, permits + (now - updatedAt) * ratePerSecond / 1e9);
+                updatedAt = now;
+            }
+            long wait = permits >= 1 ? 0 : (long) Math.ceil((1 - permits) / ratePerSecond * 1e9);
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            permits -= 1;
+            return wait;
+        }
+    }
+}
@@ -3,12 +3,26 @@ package com.kevindai.git.helper.mr.service;
 import com.kevindai.git.helper.config.GitConfig;
 import com.kevindai.git.helper.entity.GitTokenEntity;
 import com.kevindai.git.helper.repository.GitTokenRepository;
+import com.kevindai.git.helper.repository.GitTokenTableVersion;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 
-import java.util.*;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Resolves the GitLab token for a group path from an in-memory {@link GroupPathTrie} of the
+ * {@code git_token} table, so lookups never hit the database.
+ * <p>
+ * The trie is loaded on first use and rebuilt when {@link #reload()} is called (admin endpoint) or
+ * when the periodic check sees the table fingerprint (row count, max updated_at, id sum) change.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class GitTokenService {
@@ -16,34 +30,92 @@ public class GitTokenService {
     private final GitTokenRepository tokenRepository;
     private final GitConfig gitConfig; // fallback token from config/env
 
+    private volatile Loaded loaded;
+
+    private record Loaded(GroupPathTrie trie, Map<String, TokenInfo> tokens, GitTokenTableVersion version, Instant loadedAt) {
+    }
+
+    /**
+     * Per-token settings. {@code label} identifies the token in logs and metrics without exposing it;
+     * null rate/burst mean the configured defaults.
+     */
+    public record TokenInfo(String label, Double ratePerSecond, Integer burst) {
+
+        static final TokenInfo CONFIG = new TokenInfo("config", null, null);
+    }
+
     public String resolveTokenForGroup(String fullGroupPath) {
-        // Generate candidates: full path, then parent prefixes
-        List<String> candidates = new ArrayList<>();
-        if (StringUtils.hasText(fullGroupPath)) {
-            String[] parts = fullGroupPath.split("/");
-            for (int i = parts.length; i >= 1; i--) {
-                String prefix = String.join("/", Arrays.copyOf(parts, i));
-                candidates.add(prefix);
-            }
-        }
+        String token = current().trie().resolve(fullGroupPath);
+        // final fallback to config token
+        return token != null ? token : gitConfig.getToken();
+    }
+
+    /**
+     * Settings of a resolved token; tokens not in the table (GITLAB_TOKEN) get the defaults.
+     */
+    public TokenInfo tokenInfo(String token) {
+        TokenInfo info = token == null ? null : current().tokens().get(token);
+        return info != null ? info : TokenInfo.CONFIG;
+    }
 
-        if (!candidates.isEmpty()) {
-            List<GitTokenEntity> matches = tokenRepository.findByGroupPathIn(candidates);
-            if (!matches.isEmpty()) {
-                // pick the longest group_path match
-                matches.sort(Comparator.comparingInt(e -> -Optional.ofNullable(e.getGroupPath()).orElse("").length()));
-                return matches.getFirst().getToken();
+    /**
+     * Rebuild the trie from the table.
+     */
+    public synchronized GroupPathTrie reload() {
+        GitTokenTableVersion version = tokenRepository.tableVersion();
+        List<GitTokenEntity> rows = tokenRepository.findAll();
+        GroupPathTrie trie = GroupPathTrie.build(rows);
+        loaded = new Loaded(trie, tokenInfos(rows), version, Instant.now());
+        log.info("Git tokens loaded: groupTokens={}, default={}", trie.groupTokens(), trie.hasDefault());
+        return trie;
+    }
+
+    public Instant loadedAt() {
+        Loaded l = loaded;
+        return l == null ? null : l.loadedAt();
+    }
+
+    @Scheduled(fixedDelayString = "${mr.analysis.tokens.check-interval-ms:30000}")
+    public void reloadIfChanged() {
+        Loaded l = loaded;
+        if (l == null) {
+            return; // not used yet; first lookup loads it
+        }
+        try {
+            if (!tokenRepository.tableVersion().equals(l.version())) {
+                reload();
             }
+        } catch (Exception e) {
+            log.warn("Git token change check failed, keeping current tokens: {}", e.getMessage());
         }
+    }
 
-        // fallback to default record
-        Optional<GitTokenEntity> def = tokenRepository.findFirstByIsDefaultIsTrue();
-        if (def.isPresent()) {
-            return def.get().getToken();
-        }
+    /**
+     * One entry per distinct token (several groups may share a bot's token); the lowest id names it
+     * and the first row that sets a rate or burst provides it.
+     */
+    private static Map<String, TokenInfo> tokenInfos(List<GitTokenEntity> rows) {
+        Map<String, TokenInfo> infos = new HashMap<>();
+        rows.stream()
+                .sorted(Comparator.comparing(GitTokenEntity::getId, Comparator.nullsLast(Comparator.naturalOrder())))
+                .forEach(row -> infos.merge(row.getToken(),
+                        new TokenInfo("git_token:" + row.getId(), row.getRatePerSecond(), row.getBurst()),
+                        (first, next) -> new TokenInfo(first.label(),
+                                first.ratePerSecond() != null ? first.ratePerSecond() : next.ratePerSecond(),
+                                first.burst() != null ? first.burst() : next.burst())));
+        return Map.copyOf(infos);
+    }
 
-        // final fallback to config token
-        return gitConfig.getToken();
+    private Loaded current() {
+        Loaded l = loaded;
+        if (l == null) {
+            synchronized (this) {
+                if (loaded == null) {
+                    reload();
+                }
+                l = loaded;
+            }
+        }
+        return l;
     }
 }
-
@@ -0,0 +1,104 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.entity.GitTokenEntity;
+import org.springframework.util.StringUtils;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable prefix trie of group paths ({@code a/b/c}) to tokens, built from the {@code git_token}
+ * table. A lookup walks one node per path segment and returns the token of the deepest configured
+ * prefix, falling back to the default token.
+ */
+public final class GroupPathTrie {
+
+    public static final GroupPathTrie EMPTY = new GroupPathTrie(new Node(), null, 0);
+
+    private final Node root;
+    private final String defaultToken;
+    private final int groupTokens;
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>(4);
+        private String token;
+    }
+
+    private GroupPathTrie(Node root, String defaultToken, int groupTokens) {
+        this.root = root;
+        this.defaultToken = defaultToken;
+        this.groupTokens = groupTokens;
+    }
+
+    public static GroupPathTrie build(List<GitTokenEntity> rows) {
+        Node root = new Node();
+        String defaultToken = null;
+        int groupTokens = 0;
+        // Lowest id wins for duplicates, so the result does not depend on row order
+        List<GitTokenEntity> ordered = rows.stream()
+                .sorted(Comparator.comparing(GitTokenEntity::getId, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+        for (GitTokenEntity row : ordered) {
+            if (row.isDefault() && defaultToken == null) {
+                defaultToken = row.getToken();
+            }
+            String path = normalize(row.getGroupPath());
+            if (path.isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            for (String segment : path.split("/")) {
+                node = node.children.computeIfAbsent(segment, k -> new Node());
+            }
+            if (node.token == null) {
+                node.token = row.getToken();
+                groupTokens++;
+            }
+        }
+        return new GroupPathTrie(root, defaultToken, groupTokens);
+    }
+
+    /**
+     * Token of the longest configured prefix of {@code fullGroupPath}, else the default token, else null.
+     */
+    public String resolve(String fullGroupPath) {
+        String match = null;
+        if (StringUtils.hasText(fullGroupPath)) {
+            Node node = root;
+            int start = 0;
+            int length = fullGroupPath.length();
+            while (node != null && start < length) {
+                int slash = fullGroupPath.indexOf('/', start);
+                int end = slash < 0 ? length : slash;
+                node = end > start ? node.children.get(fullGroupPath.substring(start, end)) : node;
+                if (node != null && node.token != null) {
+                    match = node.token;
+                }
+                start = end + 1;
+            }
+        }
+        return match != null ? match : defaultToken;
+    }
+
+    public int groupTokens() {
+        return groupTokens;
+    }
+
+    public boolean hasDefault() {
+        return defaultToken != null;
+    }
+
+    private static String normalize(String path) {
+        if (path == null) {
+            return "";
+        }
+        String p = path.trim();
+        int from = 0;
+        int to = p.length();
+        while (from < to && p.charAt(from) == '/') from++;
+        while (to > from && p.charAt(to - 1) == '/') to--;
+        return p.substring(from, to);
+    }
+}
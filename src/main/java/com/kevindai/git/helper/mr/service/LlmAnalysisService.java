@@ -1,19 +1,21 @@
 package com.kevindai.git.helper.mr.service;
 
-import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
 import com.kevindai.git.helper.mr.dto.llm.LlmAnalysisReport;
-import com.kevindai.git.helper.mr.prompt.GeneralBestPractice;
 import com.kevindai.git.helper.mr.prompt.PromptProvider;
 import com.kevindai.git.helper.mr.prompt.PromptType;
 import com.kevindai.git.helper.mr.prompt.strategy.MrContext;
 import com.kevindai.git.helper.mr.prompt.strategy.PromptStrategy;
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.mr.dto.llm.Finding;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.stereotype.Service;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -23,22 +25,94 @@ public class LlmAnalysisService {
     private final ChatClient chatClient;
     private final List<PromptStrategy> strategies;
     private final PromptProvider promptProvider;
+    private final LlmConcurrencyLimiter llmLimiter;
+    private final LlmResultCache resultCache;
+    private final MrAnalysisProperties properties;
+    private final BeanOutputConverter<LlmAnalysisReport> outputConverter = new BeanOutputConverter<>(LlmAnalysisReport.class);
 
-    public LlmAnalysisReport analyzeDiff(String content, List<MrDiff> diffs) {
-        String prompt = selectPromptForFiles(diffs);
-        return chatClient
+    /**
+     * Analyze one request. In streaming mode ({@code mr.analysis.llm-output.streaming}) each finding
+     * is passed to {@code onFinding} as soon as the model has produced it; otherwise all of them are
+     * passed once the report is parsed (cache hits included). {@code context} describes the files of
+     * the request and picks the prompt.
+     */
+    public LlmAnalysisReport analyzeDiff(String content, MrContext context, Consumer<Finding> onFinding) {
+        PromptType type = selectPromptType(context);
+        LlmResultCache.Entry cacheEntry = null;
+        if (resultCache.isEnabled()) {
+            cacheEntry = resultCache.entryFor(type, content);
+            var cached = resultCache.get(cacheEntry);
+            if (cached.isPresent()) {
+                log.info("LLM cache hit for prompt type {}", type);
+                emitFindings(cached.get(), onFinding);
+                return cached.get();
+            }
+        }
+        String prompt = promptProvider.get(type);
+        if (properties.getLlmOutput().isStreaming()) {
+            StreamingReportParser.Result result = streamReport(prompt, content, onFinding);
+            // A salvaged partial report is not cached, so the next run gets another chance at all of it
+            if (cacheEntry != null && result.complete()) {
+                resultCache.put(cacheEntry, type, result.report());
+            }
+            return result.report();
+        }
+        LlmAnalysisReport report = llmLimiter.call(() -> chatClient
                 .prompt(prompt)
                 .user(content)
                 .call()
-                .entity(LlmAnalysisReport.class);
+                .entity(LlmAnalysisReport.class));
+        if (cacheEntry != null) {
+            resultCache.put(cacheEntry, type, report);
+        }
+        emitFindings(report, onFinding);
+        return report;
+    }
+
+    /**
+     * Stream the response through {@link StreamingReportParser}. The limiter slot is held until the
+     * stream ends. When the stream breaks off after some findings arrived, those are kept.
+     */
+    private StreamingReportParser.Result streamReport(String prompt, String content, Consumer<Finding> onFinding) {
+        StreamingReportParser parser = new StreamingReportParser(onFinding);
+        LlmConcurrencyLimiter.Permit permit = llmLimiter.acquire();
+        LlmConcurrencyLimiter.Outcome outcome = LlmConcurrencyLimiter.Outcome.IGNORED;
+        try {
+            chatClient.prompt(prompt)
+                    // call().entity() appends the schema itself; the streaming path has to do it here
+                    .user(content + System.lineSeparator() + outputConverter.getFormat())
+                    .stream()
+                    .content()
+                    .doOnNext(parser::feed)
+                    .blockLast(properties.getLlmOutput().getStreamTimeout());
+            outcome = LlmConcurrencyLimiter.Outcome.SUCCESS;
+        } catch (RuntimeException e) {
+            outcome = LlmConcurrencyLimiter.classify(e);
+            if (parser.findingCount() == 0) {
+                throw e;
+            }
+            log.warn("LLM stream failed after {} findings, keeping them: {}", parser.findingCount(), e.getMessage());
+        } finally {
+            permit.release(outcome);
+        }
+        StreamingReportParser.Result result = parser.finish();
+        if (!result.complete() || result.malformed() > 0) {
+            log.warn("Partial LLM report: kept {} findings, {} malformed", result.report().getFindings().size(), result.malformed());
+        }
+        return result;
+    }
+
+    private static void emitFindings(LlmAnalysisReport report, Consumer<Finding> onFinding) {
+        if (report != null && report.getFindings() != null) {
+            report.getFindings().forEach(onFinding);
+        }
     }
 
-    private String selectPromptForFiles(List<MrDiff> diffs) {
-        if (diffs == null || diffs.isEmpty() || strategies == null || strategies.isEmpty()) {
-            return GeneralBestPractice.SYSTEM_PROMPT;
+    private PromptType selectPromptType(MrContext ctx) {
+        if (ctx == null || ctx.totalFiles() == 0 || strategies == null || strategies.isEmpty()) {
+            return PromptType.GENERIC;
         }
 
-        MrContext ctx = new MrContext(diffs);
 
         // Log scores for visibility and tuning
         strategies.forEach(s -> {
@@ -55,11 +129,10 @@ public class LlmAnalysisService {
                 .orElse(null);
 
         if (best == null) {
-            return GeneralBestPractice.SYSTEM_PROMPT;
+            return PromptType.GENERIC;
         }
         PromptType chosenType = best.type();
-        String prompt = promptProvider.get(chosenType);
         log.info("Selected prompt type: {}", chosenType);
-        return prompt;
+        return chosenType;
     }
 }
@@ -0,0 +1,213 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive (AIMD) concurrency limit for the LLM endpoint, shared by every ChatClient call.
+ * <ul>
+ *   <li>A call that succeeds within {@code slow-call-threshold} while the limit is in use raises
+ *       the limit by {@code 1/limit}, i.e. by up to one per round of calls.</li>
+ *   <li>An overload signal (429, 5xx, timeout, I/O error) or a slow success multiplies it by
+ *       {@code decrease-factor}. Only calls started after the previous decrease count, so one burst
+ *       of failures shrinks the limit once, not once per failed call.</li>
+ *   <li>Other failures (bad output, 4xx) say nothing about load and leave the limit alone.</li>
+ * </ul>
+ * Callers over the limit wait in FIFO order. Meters: {@code llm.concurrency.limit},
+ * {@code llm.concurrency.inflight}, {@code llm.concurrency.waiting}.
+ */
+@Slf4j
+@Component
+public class LlmConcurrencyLimiter {
+
+    public enum Outcome {
+        SUCCESS,
+        DROPPED,
+        IGNORED
+    }
+
+    private final MrAnalysisProperties.LlmLimit cfg;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long lastDecreaseNanos = Long.MIN_VALUE;
+
+    @Autowired
+    public LlmConcurrencyLimiter(MrAnalysisProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    LlmConcurrencyLimiter(MrAnalysisProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.cfg = properties.getLlmLimit();
+        this.nanoClock = nanoClock;
+        this.limit = Math.clamp(cfg.getInitialLimit(), minLimit(), maxLimit());
+        Gauge.builder("llm.concurrency.limit", this, LlmConcurrencyLimiter::limit).register(meterRegistry);
+        Gauge.builder("llm.concurrency.inflight", this, LlmConcurrencyLimiter::inFlight).register(meterRegistry);
+        Gauge.builder("llm.concurrency.waiting", this, LlmConcurrencyLimiter::waiting).register(meterRegistry);
+    }
+
+    /**
+     * Run a blocking LLM call under the limit; its latency and outcome adjust the limit.
+     */
+    public <T> T call(Supplier<T> action) {
+        Permit permit = acquire();
+        Outcome outcome = Outcome.IGNORED;
+        try {
+            T result = action.get();
+            outcome = Outcome.SUCCESS;
+            return result;
+        } catch (RuntimeException e) {
+            outcome = classify(e);
+            throw e;
+        } finally {
+            permit.release(outcome);
+        }
+    }
+
+    /**
+     * Take a slot for a call whose completion is signalled later (streaming). The caller must
+     * release the permit exactly once it ends; further releases are ignored.
+     */
+    public Permit acquire() {
+        lock.lock();
+        try {
+            waiting++;
+            try {
+                while (inFlight >= (int) limit) {
+                    available.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an LLM slot", e);
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+            return new Permit(nanoClock.getAsLong(), inFlight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double limit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int waiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether a failure signals an overloaded endpoint: 429, 5xx, timeouts and I/O errors anywhere
+     * in the cause chain. Spring AI reports retryable HTTP errors as {@link TransientAiException}.
+     */
+    public static Outcome classify(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof TransientAiException || t instanceof IOException || t instanceof TimeoutException) {
+                return Outcome.DROPPED;
+            }
+            if (t instanceof RestClientResponseException r && isOverload(r.getStatusCode().value())) {
+                return Outcome.DROPPED;
+            }
+            if (t instanceof WebClientResponseException w && isOverload(w.getStatusCode().value())) {
+                return Outcome.DROPPED;
+            }
+            // Spring AI reports non-retryable HTTP errors as "HTTP <status> - <body>"
+            if (t.getMessage() != null && (t.getMessage().contains("HTTP 429") || t.getMessage().contains("429 Too Many Requests"))) {
+                return Outcome.DROPPED;
+            }
+        }
+        return Outcome.IGNORED;
+    }
+
+    private static boolean isOverload(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private void onRelease(Permit permit, Outcome outcome) {
+        long now = nanoClock.getAsLong();
+        boolean slow = now - permit.startNanos > cfg.getSlowCallThreshold().toNanos();
+        lock.lock();
+        try {
+            inFlight--;
+            double before = limit;
+            if (outcome == Outcome.DROPPED || (outcome == Outcome.SUCCESS && slow)) {
+                if (permit.startNanos > lastDecreaseNanos) {
+                    limit = Math.max(minLimit(), limit * cfg.getDecreaseFactor());
+                    lastDecreaseNanos = now;
+                }
+            } else if (outcome == Outcome.SUCCESS && permit.inFlightAtStart * 2 >= limit) {
+                // grow only while the limit is actually in use
+                limit = Math.min(maxLimit(), limit + 1.0 / limit);
+            }
+            if ((int) limit != (int) before) {
+                log.info("LLM concurrency limit {} -> {} ({}{})", (int) before, (int) limit, outcome, slow ? ", slow" : "");
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double minLimit() {
+        return Math.max(1, cfg.getMinLimit());
+    }
+
+    private double maxLimit() {
+        return Math.max(minLimit(), cfg.getMaxLimit());
+    }
+
+    public final class Permit {
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        public void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(this, outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import com.kevindai.git.helper.mr.prompt.strategy.MrContext;
+import com.kevindai.git.helper.mr.util.DiffLineCursor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Plans LLM requests for an MR under a token budget: small file sections are packed together
+ * into one request, and sections larger than the budget are split along {@code @@} hunk
+ * boundaries. Every chunk keeps the {@code --- File: ...} header and the annotated lines
+ * (with their anchors) unchanged, so findings map back to the same anchor index.
+ */
+@Component
+@RequiredArgsConstructor
+public class LlmRequestPlanner {
+
+    static final String SECTION_END = "...\n";
+
+    private final MrAnalysisProperties properties;
+
+    /**
+     * One planned LLM call. {@code paths} lists the files (or file chunks) it covers in order;
+     * a path split into several chunks appears in several requests. {@code lineStats} line up with
+     * {@code diffs}.
+     */
+    public record LlmRequest(String content, List<MrDiff> diffs, List<DiffLineCursor.LineStats> lineStats,
+                             List<String> paths) {
+
+        /**
+         * Strategy scoring context, reusing the line counts taken while annotating.
+         */
+        public MrContext context() {
+            return new MrContext(diffs, lineStats);
+        }
+    }
+
+    public List<LlmRequest> plan(List<AddressableDiffBuilder.FileSection> sections) {
+        List<LlmRequest> planned = new ArrayList<>();
+        Packer packer = packer();
+        for (AddressableDiffBuilder.FileSection section : sections) {
+            packer.add(section, planned::add);
+        }
+        packer.flush(planned::add);
+        return planned;
+    }
+
+    /**
+     * Incremental form of {@link #plan}: sections are fed one at a time and each request is emitted
+     * as soon as it is full, so LLM work can start before the last file of the MR has arrived.
+     */
+    public Packer packer() {
+        return new Packer();
+    }
+
+    /**
+     * Packs sections in arrival order under the token and file budgets. Not thread-safe.
+     */
+    public final class Packer {
+        private final int budget;
+        private final int maxFiles;
+        private final StringBuilder content = new StringBuilder();
+        private final List<MrDiff> diffs = new ArrayList<>();
+        private final List<DiffLineCursor.LineStats> lineStats = new ArrayList<>();
+        private final List<String> paths = new ArrayList<>();
+        private int tokens;
+
+        private Packer() {
+            MrAnalysisProperties.Planner cfg = properties.getPlanner();
+            this.budget = Math.max(1, cfg.getMaxTokensPerRequest());
+            this.maxFiles = Math.max(1, cfg.getMaxFilesPerRequest());
+        }
+
+        public void add(AddressableDiffBuilder.FileSection section, Consumer<LlmRequest> out) {
+            int sectionTokens = estimateTokens(section.content());
+            if (sectionTokens > budget) {
+                // Oversized: flush what is pending, then emit the file as hunk-aligned chunks
+                flush(out);
+                for (String chunk : split(section.content(), budget)) {
+                    out.accept(new LlmRequest(chunk, List.of(section.diff()), List.of(section.lineStats()), List.of(section.path())));
+                }
+                return;
+            }
+            if (tokens + sectionTokens > budget || paths.size() >= maxFiles) {
+                flush(out);
+            }
+            content.append(section.content());
+            diffs.add(section.diff());
+            lineStats.add(section.lineStats());
+            paths.add(section.path());
+            tokens += sectionTokens;
+        }
+
+        /**
+         * Emit the partially filled request, if any.
+         */
+        public void flush(Consumer<LlmRequest> out) {
+            if (paths.isEmpty()) {
+                return;
+            }
+            out.accept(new LlmRequest(content.toString(), List.copyOf(diffs), List.copyOf(lineStats), List.copyOf(paths)));
+            content.setLength(0);
+            diffs.clear();
+            lineStats.clear();
+            paths.clear();
+            tokens = 0;
+        }
+    }
+
+    /**
+     * Rough token estimate; diff text with anchors tokenizes at roughly 3-4 chars per token.
+     */
+    public int estimateTokens(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        double charsPerToken = Math.max(1.0, properties.getPlanner().getCharsPerToken());
+        return (int) Math.ceil(text.length() / charsPerToken);
+    }
+
+    /**
+     * Split one annotated file section into chunks of at most {@code budget} tokens. Whole hunks are
+     * packed per chunk; only a single hunk larger than the budget is cut between lines, and its
+     * continuation chunks repeat the hunk header.
+     */
+    List<String> split(String section, int budget) {
+        int headerEnd = section.indexOf('\n') + 1;
+        String header = section.substring(0, headerEnd);
+        String body = section.endsWith(SECTION_END) ? section.substring(headerEnd, section.length() - SECTION_END.length())
+                : section.substring(headerEnd);
+        int headerTokens = estimateTokens(header) + estimateTokens(SECTION_END);
+
+        List<String> chunks = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder(header);
+        int chunkTokens = headerTokens;
+        for (String hunk : hunks(body)) {
+            int hunkTokens = estimateTokens(hunk);
+            if (chunk.length() > header.length() && chunkTokens + hunkTokens > budget) {
+                chunks.add(chunk.append(SECTION_END).toString());
+                chunk = new StringBuilder(header);
+                chunkTokens = headerTokens;
+            }
+            if (headerTokens + hunkTokens <= budget) {
+                chunk.append(hunk);
+                chunkTokens += hunkTokens;
+                continue;
+            }
+            // Hunk alone exceeds the budget: cut between lines
+            int firstNl = hunk.indexOf('\n') + 1;
+            String hunkHeader = hunk.startsWith("@@") ? hunk.substring(0, firstNl) : "";
+            int pos = 0;
+            while (pos < hunk.length()) {
+                int nl = hunk.indexOf('\n', pos);
+                int end = nl < 0 ? hunk.length() : nl + 1;
+                String line = hunk.substring(pos, end);
+                int lineTokens = estimateTokens(line);
+                if (chunk.length() > header.length() && chunkTokens + lineTokens > budget) {
+                    chunks.add(chunk.append(SECTION_END).toString());
+                    chunk = new StringBuilder(header).append(hunkHeader);
+                    chunkTokens = headerTokens + estimateTokens(hunkHeader);
+                }
+                chunk.append(line);
+                chunkTokens += lineTokens;
+                pos = end;
+            }
+        }
+        if (chunk.length() > header.length()) {
+            chunks.add(chunk.append(SECTION_END).toString());
+        }
+        return chunks;
+    }
+
+    /**
+     * Split a diff body into hunks, each starting at an {@code @@} line. Lines before the first
+     * hunk header form their own leading piece.
+     */
+    private static List<String> hunks(String body) {
+        List<String> hunks = new ArrayList<>();
+        int start = 0;
+        int pos = 0;
+        while (pos < body.length()) {
+            if (pos > start && body.startsWith("@@", pos)) {
+                hunks.add(body.substring(start, pos));
+                start = pos;
+            }
+            int nl = body.indexOf('\n', pos);
+            pos = nl < 0 ? body.length() : nl + 1;
+        }
+        if (start < body.length()) {
+            hunks.add(body.substring(start));
+        }
+        return hunks;
+    }
+}
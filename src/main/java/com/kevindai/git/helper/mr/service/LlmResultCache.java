@@ -0,0 +1,336 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.entity.LlmResultCacheEntity;
+import com.kevindai.git.helper.mr.dto.llm.Finding;
+import com.kevindai.git.helper.mr.dto.llm.LlmAnalysisReport;
+import com.kevindai.git.helper.mr.dto.llm.Location;
+import com.kevindai.git.helper.mr.prompt.PromptType;
+import com.kevindai.git.helper.repository.LlmResultCacheRepository;
+import com.kevindai.git.helper.utils.JsonUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed cache of LLM analysis reports.
+ * <p>
+ * The key is a SHA-256 of (prompt type, model, normalized request content). Normalizing drops anchor
+ * numbers, hunk start lines and file paths, and makes anchor line numbers relative to their hunk, so
+ * the same hunks hit regardless of where they sit in the MR or in the file, or which file they are in
+ * (cherry-picks, rebases, moves, re-opened MRs). Reports are stored with anchors relative to the
+ * first anchor of the request and re-anchored on hit; anchored locations then take the path and line
+ * of the current request.
+ * <p>
+ * Entries live in PostgreSQL with a small in-process LRU in front; TTL and size bounds are enforced
+ * by a periodic eviction. Hits are counted in memory and written back in batches.
+ */
+@Slf4j
+@Component
+public class LlmResultCache {
+
+    private static final Pattern ANCHOR = Pattern.compile("<<A#(\\d+)\\|([NO])\\|(.*?)\\|(\\d+)>>");
+    private static final Pattern FILE_HEADER = Pattern.compile("--- File: (.*) ---");
+    private static final Pattern HUNK = Pattern.compile("@@ -(\\d+)(,\\d+)? \\+(\\d+)(,\\d+)? @@");
+    // Stands in for a request path in cached locations that carry no anchor
+    private static final Pattern PATH_REF = Pattern.compile("<<P#(\\d+)>>");
+
+    private final LlmResultCacheRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final MrAnalysisProperties properties;
+    private final String model;
+    private final Map<String, String> memory;
+    // Hits not yet written to hit_count/last_hit_at, by key
+    private final Map<String, Integer> pendingHits = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public LlmResultCache(LlmResultCacheRepository repository,
+                          TransactionTemplate transactionTemplate,
+                          MrAnalysisProperties properties,
+                          MeterRegistry meterRegistry,
+                          @Value("${spring.ai.openai.chat.options.model:default}") String model) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.model = model;
+        int memoryEntries = Math.max(0, properties.getCache().getMemoryEntries());
+        this.memory = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > memoryEntries;
+            }
+        });
+        this.hits = Counter.builder("llm.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("llm.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("llm.cache.hit.ratio", this, LlmResultCache::hitRatio)
+                .description("Share of LLM analysis requests served from the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Key of one request content, with its first anchor number, the position of each anchor by
+     * number and its distinct paths in order of appearance.
+     */
+    public record Entry(String key, Integer anchorBase, Map<Integer, Position> positions, List<String> paths) {
+    }
+
+    public record Position(char side, String path, int line) {
+    }
+
+    public boolean isEnabled() {
+        return properties.getCache().isEnabled();
+    }
+
+    public Entry entryFor(PromptType type, String content) {
+        StringBuilder normalized = new StringBuilder(content.length());
+        Map<Integer, Position> positions = new HashMap<>();
+        List<String> paths = new ArrayList<>();
+        Integer base = null;
+        int oldStart = 0;
+        int newStart = 0;
+        for (String line : content.split("\n", -1)) {
+            Matcher file = FILE_HEADER.matcher(line);
+            Matcher hunk = HUNK.matcher(line);
+            if (file.matches()) {
+                normalized.append("--- File: ").append(pathRef(paths, file.group(1))).append(" ---");
+            } else if (hunk.lookingAt()) {
+                // Keep the hunk sizes and section heading, drop where the hunk starts
+                oldStart = Integer.parseInt(hunk.group(1));
+                newStart = Integer.parseInt(hunk.group(3));
+                normalized.append("@@ -").append(Objects.toString(hunk.group(2), ""))
+                        .append(" +").append(Objects.toString(hunk.group(4), "")).append(" @@")
+                        .append(line, hunk.end(), line.length());
+            } else {
+                Matcher a = ANCHOR.matcher(line);
+                while (a.find()) {
+                    int n = Integer.parseInt(a.group(1));
+                    char side = a.group(2).charAt(0);
+                    int lineNo = Integer.parseInt(a.group(4));
+                    if (base == null) {
+                        base = n;
+                    }
+                    positions.put(n, new Position(side, a.group(3), lineNo));
+                    int relative = lineNo - (side == 'N' ? newStart : oldStart);
+                    a.appendReplacement(normalized, Matcher.quoteReplacement(
+                            "<<A#|" + side + '|' + pathRef(paths, a.group(3)) + '|' + relative + ">>"));
+                }
+                a.appendTail(normalized);
+            }
+            normalized.append('\n');
+        }
+        return new Entry(sha256(type.name() + '\0' + model + '\0' + normalized), base, positions, paths);
+    }
+
+    public Optional<LlmAnalysisReport> get(Entry entry) {
+        String json = memory.get(entry.key());
+        try {
+            if (json == null) {
+                json = repository.findById(entry.key()).map(LlmResultCacheEntity::getReportJson).orElse(null);
+                if (json != null) {
+                    memory.put(entry.key(), json);
+                }
+            }
+        } catch (Exception ex) {
+            log.warn("LLM cache lookup failed for {}: {}", entry.key(), ex.getMessage());
+        }
+        if (json == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        pendingHits.merge(entry.key(), 1, Integer::sum);
+        LlmAnalysisReport report = JsonUtils.parseObject(json, LlmAnalysisReport.class);
+        shiftAnchors(report, entry.anchorBase(), true);
+        relocate(report, entry);
+        return Optional.of(report);
+    }
+
+    public void put(Entry entry, PromptType type, LlmAnalysisReport report) {
+        if (report == null) {
+            return;
+        }
+        // Work on a copy: the caller keeps using the absolute anchors
+        LlmAnalysisReport relative = JsonUtils.parseObject(JsonUtils.toJSONString(report), LlmAnalysisReport.class);
+        shiftAnchors(relative, entry.anchorBase(), false);
+        abstractPaths(relative, entry);
+        String json = JsonUtils.toJSONString(relative);
+        Instant now = Instant.now();
+        LlmResultCacheEntity e = new LlmResultCacheEntity();
+        e.setCacheKey(entry.key());
+        e.setPromptType(type.name());
+        e.setModel(model);
+        e.setReportJson(json);
+        e.setHitCount(0L);
+        e.setCreatedAt(now);
+        e.setLastHitAt(now);
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.save(e));
+            memory.put(entry.key(), json);
+        } catch (Exception ex) {
+            // concurrent insert of the same key, or DB hiccup: the cache is best effort
+            log.warn("Failed to store LLM cache entry {}: {}", entry.key(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Write the hits counted since the last flush in one transaction, one update per key.
+     */
+    @Scheduled(fixedDelayString = "${mr.analysis.cache.hit-flush-interval-ms:30000}")
+    public void flushHits() {
+        if (pendingHits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> batch = new HashMap<>();
+        for (String key : List.copyOf(pendingHits.keySet())) {
+            Integer n = pendingHits.remove(key);
+            if (n != null) {
+                batch.put(key, n);
+            }
+        }
+        Instant now = Instant.now();
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach((key, n) -> repository.touch(key, n, now)));
+        } catch (Exception ex) {
+            // Losing some hit counts only makes LRU eviction slightly less accurate
+            log.warn("Failed to record {} LLM cache hits: {}", batch.size(), ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mr.analysis.cache.eviction-interval-ms:600000}")
+    public void evict() {
+        if (!isEnabled()) {
+            return;
+        }
+        // LRU order must reflect recent hits
+        flushHits();
+        Instant cutoff = Instant.now().minus(properties.getCache().getTtl());
+        Integer expired = transactionTemplate.execute(status -> repository.deleteCreatedBefore(cutoff));
+        Integer overflow = transactionTemplate.execute(status -> repository.deleteLeastRecentlyUsedBeyond(properties.getCache().getMaxEntries()));
+        if ((expired != null && expired > 0) || (overflow != null && overflow > 0)) {
+            memory.clear();
+            log.info("LLM cache eviction: expired={}, overflow={}", expired, overflow);
+        }
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    /**
+     * Convert finding anchors between absolute ids of the current request and ids relative to its
+     * first anchor. Anchors that cannot be converted are dropped so they never point at a wrong line;
+     * the finding then falls back to its file/line location.
+     */
+    private static void shiftAnchors(LlmAnalysisReport report, Integer base, boolean toAbsolute) {
+        if (report == null || report.getFindings() == null || base == null) {
+            return;
+        }
+        for (Finding f : report.getFindings()) {
+            if (f.getLocation() == null || f.getLocation().getAnchorId() == null) {
+                continue;
+            }
+            String id = f.getLocation().getAnchorId();
+            Integer n = null;
+            if (id.startsWith("A#")) {
+                try {
+                    n = Integer.parseInt(id.substring(2));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            int shifted = n == null ? -1 : (toAbsolute ? n + base : n - base);
+            f.getLocation().setAnchorId(shifted < (toAbsolute ? base : 0) ? null : "A#" + shifted);
+        }
+    }
+
+    /**
+     * Point anchored findings of a hit at the path and line of the current request (shifting the end
+     * line along) and resolve path references of unanchored ones.
+     */
+    private static void relocate(LlmAnalysisReport report, Entry entry) {
+        if (report == null || report.getFindings() == null) {
+            return;
+        }
+        for (Finding f : report.getFindings()) {
+            Location loc = f.getLocation();
+            if (loc == null) {
+                continue;
+            }
+            Position p = loc.getAnchorId() == null ? null : entry.positions().get(Integer.valueOf(loc.getAnchorId().substring(2)));
+            if (p != null) {
+                if (loc.getStartLine() != null && loc.getEndLine() != null) {
+                    loc.setEndLine(loc.getEndLine() + p.line() - loc.getStartLine());
+                }
+                loc.setFile(p.path());
+                loc.setStartLine(p.line());
+                loc.setLineType(p.side() == 'N' ? Location.LineType.NEW_LINE.getValue() : Location.LineType.OLD_LINE.getValue());
+            } else if (loc.getFile() != null) {
+                Matcher ref = PATH_REF.matcher(loc.getFile());
+                if (ref.matches()) {
+                    int i = Integer.parseInt(ref.group(1));
+                    loc.setFile(i < entry.paths().size() ? entry.paths().get(i) : null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the paths of unanchored findings by references to the request's paths, so a hit for
+     * the same hunks in another file reports that file.
+     */
+    private static void abstractPaths(LlmAnalysisReport report, Entry entry) {
+        if (report.getFindings() == null) {
+            return;
+        }
+        for (Finding f : report.getFindings()) {
+            Location loc = f.getLocation();
+            if (loc != null && loc.getAnchorId() == null && loc.getFile() != null) {
+                int i = entry.paths().indexOf(loc.getFile());
+                if (i >= 0) {
+                    loc.setFile("<<P#" + i + ">>");
+                }
+            }
+        }
+    }
+
+    private static String pathRef(List<String> paths, String path) {
+        int i = paths.indexOf(path);
+        if (i < 0) {
+            i = paths.size();
+            paths.add(path);
+        }
+        return "<<P#" + i + ">>";
+    }
+
+    private static String sha256(String s) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
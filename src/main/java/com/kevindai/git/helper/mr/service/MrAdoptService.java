@@ -3,11 +3,24 @@ package com.kevindai.git.helper.mr.service;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
+import com.kevindai.git.helper.config.MrAnalysisProperties;
 import com.kevindai.git.helper.entity.MrAnalysisDetailEntity;
 import com.kevindai.git.helper.entity.MrInfoEntity;
+import com.kevindai.git.helper.mr.dto.AdoptMode;
+import com.kevindai.git.helper.mr.dto.BulkAdoptResponse;
 import com.kevindai.git.helper.mr.dto.gitlab.MrVersion;
 import com.kevindai.git.helper.repository.MrAnalysisDetailRepository;
 import com.kevindai.git.helper.repository.MrInfoEntityRepository;
@@ -27,6 +40,14 @@ public class MrAdoptService {
     private final AddressableDiffBuilder addressableDiffBuilder;
     private final GitTokenService gitTokenService;
     private final GitLabRequestContext gitLabRequestContext;
+    private final MrDiffSnapshotService diffSnapshotService;
+    private final MrAnalysisDetailService detailService;
+    private final MrAnalysisProperties properties;
+    private final Executor mrAdoptExecutor;
+
+    // Shared across requests so concurrent bulk adopts with the same token respect one cap. Keyed by
+    // token label: a null token (no config token) maps to "config" and token strings are not retained
+    private final Map<String, Semaphore> tokenPermits = new ConcurrentHashMap<>();
 
     public void adoptRecommendation(long detailId) {
         MrAnalysisDetailEntity detail = detailRepository.findById(detailId)
@@ -35,55 +56,145 @@ public class MrAdoptService {
         MrInfoEntity mrInfo = mrInfoRepository.findById(detail.getMrInfoId())
                 .orElseThrow(() -> new IllegalStateException("MR info not found for id: " + detail.getMrInfoId()));
 
-        long projectId = detail.getProjectId();
-        int mrId = Math.toIntExact(detail.getMrId());
-
         // Resolve token by parsing group path from MR URL
-        var parsedUrl = gitLabService.parseMrUrl(mrInfo.getWebUrl());
-        String token = gitTokenService.resolveTokenForGroup(parsedUrl.getGroupFullPath());
-        gitLabRequestContext.setGroupFullPath(parsedUrl.getGroupFullPath());
-        gitLabRequestContext.setToken(token);
+        var scope = scopeFor(mrInfo);
+        gitLabRequestContext.runWith(scope, () -> {
+            DiffSnapshot snapshot = loadSnapshot(mrInfo);
+            postDiscussion(detail, snapshot, resolvePosition(detail, snapshot));
+        });
 
-        List<MrVersion> versions = gitLabService.fetchMrVersions(projectId, mrId);
-        if (versions == null || versions.isEmpty()) {
-            throw new IllegalStateException("No versions found for MR " + mrId);
-        }
+        // Mark as adopted on success
+        detail.setStatus(1);
+        detailRepository.save(detail);
+    }
 
-        // Pick the latest by created_at
-        MrVersion latest = versions.stream().max(Comparator.comparing(v -> parseTimeSafe(v.getCreated_at()))).orElse(versions.getFirst());
+    /**
+     * Adopt many details at once. Details are grouped by analyzed sha so the diff snapshot (or the
+     * GitLab fallback) and the token are resolved once per MR; discussions are posted in parallel,
+     * at most {@code mr.analysis.adopt.parallelism-per-token} at a time per token, and the adopted
+     * status is written in one update. In {@link AdoptMode#DRAFT} mode findings become draft notes
+     * published with one bulk publish per MR. Returns one result per distinct id, in request order.
+     */
+    public List<BulkAdoptResponse.Item> adoptRecommendations(List<Long> detailIds, AdoptMode requestedMode) {
+        AdoptMode mode = requestedMode != null ? requestedMode : properties.getAdopt().getMode();
+        List<Long> ids = detailIds.stream().filter(Objects::nonNull).distinct().toList();
+        Map<Long, BulkAdoptResponse.Item> results = new ConcurrentHashMap<>();
 
-        if (!safeEq(latest.getHead_commit_sha(), mrInfo.getSha())) {
-            throw new IllegalStateException("MR head SHA mismatch. Expected=" + mrInfo.getSha() + ", latest=" + latest.getHead_commit_sha());
+        Map<Long, MrAnalysisDetailEntity> details = detailRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(MrAnalysisDetailEntity::getId, d -> d));
+        ids.stream().filter(id -> !details.containsKey(id))
+                .forEach(id -> results.put(id, failure(id, "Detail not found: " + id)));
+        Map<Long, List<MrAnalysisDetailEntity>> byMrInfo = details.values().stream()
+                .collect(Collectors.groupingBy(MrAnalysisDetailEntity::getMrInfoId, LinkedHashMap::new, Collectors.toList()));
+        Map<Long, MrInfoEntity> infos = mrInfoRepository.findAllById(byMrInfo.keySet()).stream()
+                .collect(Collectors.toMap(MrInfoEntity::getId, i -> i));
+
+        List<CompletableFuture<Void>> posts = new ArrayList<>();
+        byMrInfo.forEach((mrInfoId, group) -> {
+            MrInfoEntity mrInfo = infos.get(mrInfoId);
+            if (mrInfo == null) {
+                group.forEach(d -> results.put(d.getId(), failure(d.getId(), "MR info not found for id: " + mrInfoId)));
+                return;
+            }
+            GitLabRequestContext.Scope scope;
+            DiffSnapshot snapshot;
+            Semaphore permits;
+            try {
+                scope = scopeFor(mrInfo);
+                snapshot = gitLabRequestContext.callWith(scope, () -> loadSnapshot(mrInfo));
+                permits = tokenPermits.computeIfAbsent(gitTokenService.tokenInfo(scope.token()).label(),
+                        label -> new Semaphore(Math.max(1, properties.getAdopt().getParallelismPerToken())));
+            } catch (RuntimeException e) {
+                log.warn("Bulk adopt: cannot resolve MR {} for {} details: {}", mrInfoId, group.size(), e.getMessage());
+                group.forEach(d -> results.put(d.getId(), failure(d.getId(), e.getMessage())));
+                return;
+            }
+            List<CompletableFuture<Void>> groupPosts = new ArrayList<>();
+            List<Long> drafted = Collections.synchronizedList(new ArrayList<>());
+            for (MrAnalysisDetailEntity detail : group) {
+                Position position;
+                try {
+                    position = resolvePosition(detail, snapshot);
+                } catch (RuntimeException e) {
+                    results.put(detail.getId(), failure(detail.getId(), e.getMessage()));
+                    continue;
+                }
+                groupPosts.add(CompletableFuture.runAsync(() -> withPermit(scope, permits,
+                        () -> post(detail, snapshot, position, mode)), mrAdoptExecutor).handle((v, ex) -> {
+                    if (ex != null) {
+                        results.put(detail.getId(), failure(detail.getId(), (ex.getCause() != null ? ex.getCause() : ex).getMessage()));
+                    } else if (mode == AdoptMode.DRAFT) {
+                        drafted.add(detail.getId());
+                    } else {
+                        results.put(detail.getId(), success(detail.getId()));
+                    }
+                    return null;
+                }));
+            }
+            CompletableFuture<Void> groupDone = CompletableFuture.allOf(groupPosts.toArray(CompletableFuture[]::new));
+            if (mode == AdoptMode.DRAFT) {
+                // One publish per MR once every draft of the group is in place
+                groupDone = groupDone.thenRunAsync(() -> publishDrafts(mrInfo, scope, permits, drafted, results), mrAdoptExecutor);
+            }
+            posts.add(groupDone);
+        });
+        CompletableFuture.allOf(posts.toArray(CompletableFuture[]::new)).join();
+
+        List<Long> adopted = ids.stream()
+                .filter(id -> "success".equals(results.get(id).getStatus()))
+                .toList();
+        try {
+            detailService.markAdopted(adopted);
+        } catch (RuntimeException e) {
+            log.error("Bulk adopt: comments created but status update failed for {}", adopted, e);
+            adopted.forEach(id -> results.put(id, failure(id, "Comment created, but recording the adopted status failed: " + e.getMessage())));
         }
+        return ids.stream().map(results::get).toList();
+    }
 
-        // fetch diffs (latest head verified above) and build anchor index
-        var diffs = gitLabService.fetchMrDiffs(projectId, mrId);
-        var annotated = addressableDiffBuilder.buildAnnotatedWithIndex(diffs);
-        var index = annotated.getIndex();
+    private record Position(String filePath, Integer newLine, Integer oldLine) {
+    }
+
+    private GitLabRequestContext.Scope scopeFor(MrInfoEntity mrInfo) {
+        var parsedUrl = gitLabService.parseMrUrl(mrInfo.getWebUrl());
+        String token = gitTokenService.resolveTokenForGroup(parsedUrl.getGroupFullPath());
+        return new GitLabRequestContext.Scope(parsedUrl.getGroupFullPath(), token);
+    }
+
+    /**
+     * Snapshot taken at analysis time: one indexed read instead of versions + diffs + re-annotation.
+     */
+    private DiffSnapshot loadSnapshot(MrInfoEntity mrInfo) {
+        return diffSnapshotService.find(mrInfo.getId())
+                .filter(s -> s.refs().isComplete())
+                .orElseGet(() -> snapshotFromGitLab(mrInfo));
+    }
+
+    private static Position resolvePosition(MrAnalysisDetailEntity detail, DiffSnapshot snapshot) {
+        long detailId = detail.getId();
+        var index = snapshot.index();
         Integer newLine = null;
         Integer oldLine = null;
         String filePathForPosition = detail.getFile();
 
         // Prefer anchor if available
         if (StringUtils.hasText(detail.getAnchorId())) {
-            var ae = index.get(detail.getAnchorId());
-            if (ae == null) {
+            var anchor = index.get(detail.getAnchorId());
+            if (anchor == null) {
                 throw new IllegalStateException("Anchor not found in current diff index: " + detail.getAnchorId());
             }
-            if (ae.side == 'N') {
-                filePathForPosition = ae.newPath;
-                newLine = ae.newLine;
+            filePathForPosition = anchor.path();
+            if (anchor.side() == 'N') {
+                newLine = anchor.newLine();
             } else {
-                filePathForPosition = ae.oldPath;
-                oldLine = ae.oldLine;
+                oldLine = anchor.oldLine();
             }
         }
 
-        String finalFilePathForPosition = filePathForPosition;
-        var matched = diffs.stream()
-                .filter(d -> safeEq(finalFilePathForPosition, d.getNew_path()) || safeEq(finalFilePathForPosition, d.getOld_path()))
-                .findFirst()
-                .orElseThrow(() -> new IllegalStateException("No diff found for file: " + finalFilePathForPosition));
+        var matched = snapshot.file(filePathForPosition);
+        if (matched == null) {
+            throw new IllegalStateException("No diff found for file: " + filePathForPosition);
+        }
 
         // If still no line resolved, fall back to stored lineType/startLine
         if (newLine == null && oldLine == null) {
@@ -102,35 +213,118 @@ public class MrAdoptService {
         }
 
         // Enforce file state compatibility
-        if (Boolean.TRUE.equals(matched.isDeleted_file())) {
+        if (matched.deletedFile()) {
             newLine = null; // cannot comment on new side for deleted files
             if (oldLine == null) {
                 throw new IllegalStateException("Deleted file requires old_line");
             }
         }
-        if (Boolean.TRUE.equals(matched.isNew_file())) {
+        if (matched.newFile()) {
             oldLine = null; // cannot comment on old side for new files
             if (newLine == null) {
                 throw new IllegalStateException("New file requires new_line");
             }
         }
+        return new Position(filePathForPosition, newLine, oldLine);
+    }
 
+    private void postDiscussion(MrAnalysisDetailEntity detail, DiffSnapshot snapshot, Position position) {
         gitLabService.createMrDiscussion(
-                projectId,
-                mrId,
-                latest.getBase_commit_sha(),
-                latest.getHead_commit_sha(),
-                latest.getStart_commit_sha(),
-                filePathForPosition,
-                newLine,
-                oldLine,
+                detail.getProjectId(),
+                Math.toIntExact(detail.getMrId()),
+                snapshot.refs().baseSha(),
+                snapshot.refs().headSha(),
+                snapshot.refs().startSha(),
+                position.filePath(),
+                position.newLine(),
+                position.oldLine(),
                 detail.getRemediationSteps()
         );
+    }
 
-        // Mark as adopted on success
-        detail.setStatus(1);
-        detailRepository.save(detail);
+    private void withPermit(GitLabRequestContext.Scope scope, Semaphore permits, Runnable call) {
+        gitLabRequestContext.runWith(scope, () -> {
+            permits.acquireUninterruptibly();
+            try {
+                call.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    private void post(MrAnalysisDetailEntity detail, DiffSnapshot snapshot, Position position, AdoptMode mode) {
+        if (mode != AdoptMode.DRAFT) {
+            postDiscussion(detail, snapshot, position);
+            return;
+        }
+        gitLabService.createMrDraftNote(
+                detail.getProjectId(),
+                Math.toIntExact(detail.getMrId()),
+                snapshot.refs().baseSha(),
+                snapshot.refs().headSha(),
+                snapshot.refs().startSha(),
+                position.filePath(),
+                position.newLine(),
+                position.oldLine(),
+                detail.getRemediationSteps()
+        );
+    }
+
+    /**
+     * Bulk publish pending drafts of the MR. Note that GitLab publishes every pending draft of the
+     * token's user on that MR, not only the ones created here.
+     */
+    private void publishDrafts(MrInfoEntity mrInfo,
+                               GitLabRequestContext.Scope scope,
+                               Semaphore permits,
+                               List<Long> drafted,
+                               Map<Long, BulkAdoptResponse.Item> results) {
+        if (drafted.isEmpty()) {
+            return;
+        }
+        try {
+            withPermit(scope, permits, () -> gitLabService.publishMrDraftNotes(mrInfo.getProjectId(), Math.toIntExact(mrInfo.getMrId())));
+            drafted.forEach(id -> results.put(id, success(id)));
+        } catch (RuntimeException e) {
+            log.warn("Bulk adopt: publishing {} draft notes failed for mrInfoId={}: {}", drafted.size(), mrInfo.getId(), e.getMessage());
+            drafted.forEach(id -> results.put(id, failure(id, "Draft note created but publishing failed: " + e.getMessage())));
+        }
+    }
 
+    private static BulkAdoptResponse.Item success(long detailId) {
+        return BulkAdoptResponse.Item.builder().detailId(detailId).status("success").message("Comment created.").build();
+    }
+
+    private static BulkAdoptResponse.Item failure(long detailId, String message) {
+        return BulkAdoptResponse.Item.builder().detailId(detailId).status("failure").message(message).build();
+    }
+
+    /**
+     * Fallback for analyses without a stored snapshot (stored before snapshots existed): rebuild it
+     * from the latest MR version, which must still be the analyzed sha. Those analyses numbered
+     * anchors over the first diff page sorted by path, so the rebuild must do the same.
+     */
+    private DiffSnapshot snapshotFromGitLab(MrInfoEntity mrInfo) {
+        long projectId = mrInfo.getProjectId();
+        int mrId = Math.toIntExact(mrInfo.getMrId());
+        // Read fresh, never cached: this is what tells whether the MR moved on since the analysis
+        List<MrVersion> versions = gitLabService.fetchMrVersions(projectId, mrId);
+        if (versions == null || versions.isEmpty()) {
+            throw new IllegalStateException("No versions found for MR " + mrId);
+        }
+
+        // Pick the latest by created_at
+        MrVersion latest = versions.stream().max(Comparator.comparing(v -> parseTimeSafe(v.getCreated_at()))).orElse(versions.getFirst());
+
+        if (!safeEq(latest.getHead_commit_sha(), mrInfo.getSha())) {
+            throw new IllegalStateException("MR head SHA mismatch. Expected=" + mrInfo.getSha() + ", latest=" + latest.getHead_commit_sha());
+        }
+
+        // fetch diffs (latest head verified above) and build anchor index
+        var diffs = gitLabService.fetchMrDiffsFirstPage(projectId, mrId);
+        var refs = new DiffSnapshot.DiffRefs(latest.getBase_commit_sha(), latest.getStart_commit_sha(), latest.getHead_commit_sha());
+        return DiffSnapshot.of(refs, addressableDiffBuilder.buildLegacyAnnotatedWithIndex(diffs));
     }
 
     private static Instant parseTimeSafe(String iso) {
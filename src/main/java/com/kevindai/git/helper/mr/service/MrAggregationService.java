@@ -6,6 +6,7 @@ import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
 import com.kevindai.git.helper.mr.dto.llm.LlmAnalysisReport;
 import com.kevindai.git.helper.mr.model.Severity;
 import com.kevindai.git.helper.mr.prompt.CrossFileCoherencePrompt;
+import com.kevindai.git.helper.repository.FindingRow;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -21,37 +22,37 @@ import java.util.stream.Collectors;
 public class MrAggregationService {
 
     private final ChatClient chatClient;
+    private final LlmConcurrencyLimiter llmLimiter;
     private final MrAnalysisDetailService detailService;
 
     public LlmAnalysisReport aggregate(MrInfoEntity info,
                                        List<MrDiff> diffs,
                                        AddressableDiffBuilder.AnnotatedDiff annotated) {
-        var details = detailService.loadDetails(info.getId());
-        Map<String, List<MrAnalysisDetailEntity>> byFile = details.stream()
-                .filter(d -> StringUtils.hasText(d.getFile()))
-                .collect(Collectors.groupingBy(MrAnalysisDetailEntity::getFile));
+        // Rows arrive ordered by severity rank, and grouping keeps that order per file
+        var details = detailService.loadRows(info.getId());
+        Map<String, List<FindingRow>> byFile = details.stream()
+                .filter(d -> StringUtils.hasText(d.file()))
+                .collect(Collectors.groupingBy(FindingRow::file));
 
         StringBuilder summaries = new StringBuilder();
         summaries.append("=== FILE SUMMARIES ===\n");
         byFile.forEach((file, list) -> {
             long high = list.stream().filter(d -> {
-                Severity sev = Severity.from(d.getSeverity());
+                Severity sev = Severity.from(d.severity());
                 return sev == Severity.BLOCKER || sev == Severity.HIGH;
             }).count();
-            long medium = list.stream().filter(d -> Severity.from(d.getSeverity()) == Severity.MEDIUM).count();
+            long medium = list.stream().filter(d -> Severity.from(d.severity()) == Severity.MEDIUM).count();
             long low = list.stream().filter(d -> {
-                Severity sev = Severity.from(d.getSeverity());
+                Severity sev = Severity.from(d.severity());
                 return sev == Severity.LOW || sev == Severity.INFO;
             }).count();
             summaries.append("- ").append(file).append(" | sev(blocker/high/med/low/info): ")
                     .append(high).append('/').append(medium).append('/').append(low).append("\n");
             int cap = 5;
-            for (var d : list.stream()
-                    .sorted(Comparator.comparingInt(x -> Severity.from(x.getSeverity()).rank()))
-                    .limit(cap).toList()) {
-                summaries.append("  • [").append(Optional.ofNullable(d.getSeverity()).orElse("?"))
-                        .append("] ").append(Optional.ofNullable(d.getTitle()).orElse(""))
-                        .append(" @ ").append(Optional.ofNullable(d.getAnchorId()).orElse("?"))
+            for (var d : list.stream().limit(cap).toList()) {
+                summaries.append("  • [").append(Optional.ofNullable(d.severity()).orElse("?"))
+                        .append("] ").append(Optional.ofNullable(d.title()).orElse(""))
+                        .append(" @ ").append(Optional.ofNullable(d.anchorId()).orElse("?"))
                         .append("\n");
             }
         });
@@ -62,8 +63,8 @@ public class MrAggregationService {
         for (var e : byFile.entrySet()) {
             String file = e.getKey();
             for (var d : e.getValue()) {
-                if (StringUtils.hasText(d.getTitle())) collectTokens(tokenToFiles, d.getTitle(), file);
-                if (StringUtils.hasText(d.getEvidence())) collectTokens(tokenToFiles, d.getEvidence(), file);
+                if (StringUtils.hasText(d.title())) collectTokens(tokenToFiles, d.title(), file);
+                if (StringUtils.hasText(d.evidence())) collectTokens(tokenToFiles, d.evidence(), file);
             }
         }
         List<String> candidates = tokenToFiles.entrySet().stream()
@@ -73,32 +74,35 @@ public class MrAggregationService {
                 .limit(5)
                 .toList();
 
-        String annotatedContent = annotated.getContent();
         for (String tok : candidates) {
             bridges.append("-- token: ").append(tok).append(" --\n");
             int found = 0;
-            int idx = 0;
-            while (found < 8 && idx >= 0) {
-                idx = annotatedContent.indexOf(tok, idx);
-                if (idx < 0) break;
-                int lineStart = annotatedContent.lastIndexOf('\n', Math.max(0, idx - 1)) + 1;
-                int lineEnd = annotatedContent.indexOf('\n', idx);
-                if (lineEnd < 0) lineEnd = annotatedContent.length();
-                String line = annotatedContent.substring(lineStart, lineEnd);
-                if (line.contains("<<A#")) {
-                    bridges.append(line).append('\n');
-                    found++;
+            // Scan file sections in place; only matching anchored lines are copied out
+            for (var section : annotated.getSections()) {
+                String content = section.content();
+                int idx = 0;
+                while (found < 8 && idx >= 0) {
+                    idx = content.indexOf(tok, idx);
+                    if (idx < 0) break;
+                    int lineStart = content.lastIndexOf('\n', Math.max(0, idx - 1)) + 1;
+                    int lineEnd = content.indexOf('\n', idx);
+                    if (lineEnd < 0) lineEnd = content.length();
+                    if (content.indexOf("<<A#", lineStart, lineEnd) >= 0) {
+                        bridges.append(content, lineStart, lineEnd).append('\n');
+                        found++;
+                    }
+                    idx = lineEnd + 1;
                 }
-                idx = lineEnd + 1;
+                if (found >= 8) break;
             }
         }
 
         String userContent = summaries.append('\n').append(bridges).toString();
-        return chatClient
+        return llmLimiter.call(() -> chatClient
                 .prompt(CrossFileCoherencePrompt.SYSTEM_PROMPT)
                 .user(userContent)
                 .call()
-                .entity(LlmAnalysisReport.class);
+                .entity(LlmAnalysisReport.class));
     }
 
     private static void collectTokens(Map<String, Set<String>> map, String text, String file) {
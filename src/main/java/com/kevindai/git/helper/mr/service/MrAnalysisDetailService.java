@@ -4,15 +4,20 @@ import com.kevindai.git.helper.entity.MrAnalysisDetailEntity;
 import com.kevindai.git.helper.entity.MrInfoEntity;
 import com.kevindai.git.helper.mr.dto.llm.Finding;
 import com.kevindai.git.helper.mr.dto.llm.LlmAnalysisReport;
+import com.kevindai.git.helper.mr.model.Severity;
+import com.kevindai.git.helper.repository.FindingRow;
 import com.kevindai.git.helper.repository.MrAnalysisDetailRepository;
 import com.kevindai.git.helper.utils.JsonUtils;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -21,14 +26,26 @@ public class MrAnalysisDetailService {
 
     private final MrAnalysisDetailRepository analysisDetailRepository;
 
-    public void persist(MrInfoEntity mrInfo,
-                        LlmAnalysisReport report,
-                        Map<String, AddressableDiffBuilder.AnchorEntry> anchorIndex) {
+    /**
+     * Order of {@link MrAnalysisDetailRepository#findByMrInfoIdOrderBySeverity}: severity, then id.
+     */
+    public static final Comparator<MrAnalysisDetailEntity> BY_SEVERITY =
+            Comparator.comparing(MrAnalysisDetailEntity::getSeverityRank, Comparator.nullsLast(Comparator.naturalOrder()))
+                    .thenComparing(MrAnalysisDetailEntity::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * Save the findings of one LLM response in one batch and return the saved rows (ids assigned).
+     */
+    @Transactional
+    public List<MrAnalysisDetailEntity> persist(MrInfoEntity mrInfo,
+                                                LlmAnalysisReport report,
+                                                AnchorIndex anchorIndex) {
         if (mrInfo == null || report == null || report.getFindings() == null) {
-            return;
+            return List.of();
         }
 
         Instant now = Instant.now();
+        List<MrAnalysisDetailEntity> rows = new ArrayList<>(report.getFindings().size());
         for (Finding f : report.getFindings()) {
             MrAnalysisDetailEntity e = new MrAnalysisDetailEntity();
             e.setMrInfoId(mrInfo.getId());
@@ -36,6 +53,7 @@ public class MrAnalysisDetailService {
             e.setMrId(mrInfo.getMrId());
             e.setStatus(0); // default: not adopted
             e.setSeverity(f.getSeverity());
+            e.setSeverityRank(Severity.from(f.getSeverity()).rank());
             e.setCategory(f.getCategory());
             e.setTitle(f.getTitle());
             e.setDescription(f.getDescription());
@@ -46,17 +64,11 @@ public class MrAnalysisDetailService {
                 e.setAnchorId(anchorId);
                 e.setAnchorSide(anchorSide);
 
-                AddressableDiffBuilder.AnchorEntry ae = anchorId != null && anchorIndex != null ? anchorIndex.get(anchorId) : null;
-                if (ae != null) {
-                    if (ae.side == 'N') {
-                        e.setFile(ae.newPath);
-                        e.setLineType("new_line");
-                        e.setStartLine(ae.newLine);
-                    } else {
-                        e.setFile(ae.oldPath);
-                        e.setLineType("old_line");
-                        e.setStartLine(ae.oldLine);
-                    }
+                AnchorIndex.Anchor anchor = anchorIndex != null ? anchorIndex.get(anchorId) : null;
+                if (anchor != null) {
+                    e.setFile(anchor.path());
+                    e.setLineType(anchor.lineType());
+                    e.setStartLine(anchor.line());
                 } else {
                     e.setFile(f.getLocation().getFile());
                     e.setStartLine(f.getLocation().getStartLine());
@@ -74,12 +86,48 @@ public class MrAnalysisDetailService {
             }
             e.setCreatedAt(now);
             e.setUpdatedAt(now);
-            analysisDetailRepository.save(e);
+            rows.add(e);
         }
+        return analysisDetailRepository.saveAll(rows);
+    }
+
+    /**
+     * Mark details as adopted in one update statement.
+     */
+    @Transactional
+    public int markAdopted(Collection<Long> detailIds) {
+        if (detailIds == null || detailIds.isEmpty()) {
+            return 0;
+        }
+        return analysisDetailRepository.updateStatus(detailIds, 1, Instant.now());
+    }
+
+    @Transactional
+    public void saveAll(List<MrAnalysisDetailEntity> details) {
+        if (details == null || details.isEmpty()) {
+            return;
+        }
+        analysisDetailRepository.saveAll(details);
+    }
+
+    /**
+     * Drop every finding of one analyzed sha in one statement.
+     */
+    @Transactional
+    public int deleteAll(Long mrInfoId) {
+        return analysisDetailRepository.deleteByMrInfoId(mrInfoId);
     }
 
     public List<MrAnalysisDetailEntity> loadDetails(Long mrInfoId) {
         if (mrInfoId == null) return java.util.List.of();
         return analysisDetailRepository.findByMrInfoIdOrderBySeverity(mrInfoId);
     }
+
+    /**
+     * Report columns only, ordered by severity rank then id.
+     */
+    public List<FindingRow> loadRows(Long mrInfoId) {
+        if (mrInfoId == null) return List.of();
+        return analysisDetailRepository.findRowsByMrInfoIdOrderBySeverity(mrInfoId);
+    }
 }
@@ -0,0 +1,238 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.mr.dto.AnalysisStatus;
+import com.kevindai.git.helper.mr.dto.MrAnalysisJobResponse;
+import com.kevindai.git.helper.mr.dto.MrAnalyzeRequest;
+import com.kevindai.git.helper.mr.dto.MrAnalyzeResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs MR analyses in the background and keeps their progress in memory so clients
+ * can poll it or follow it over SSE instead of holding a request thread for the whole run.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MrAnalysisJobService {
+
+    private final MrAnalyzeService mrAnalyzeService;
+    private final Executor mrJobExecutor;
+    private final MrAnalysisProperties properties;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public String submit(MrAnalyzeRequest req) {
+        Job job = new Job(UUID.randomUUID().toString(), req.getMrUrl());
+        jobs.put(job.id, job);
+        try {
+            mrJobExecutor.execute(() -> run(job, req));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.id);
+            throw new IllegalStateException("Too many analysis jobs queued, please retry later");
+        }
+        log.info("MR analysis job submitted. jobId={}, mrUrl={}", job.id, req.getMrUrl());
+        return job.id;
+    }
+
+    public Optional<MrAnalysisJobResponse> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(Job::snapshot);
+    }
+
+    /**
+     * Stream progress of a job. The current state is sent right away; a job that already
+     * finished gets its final frame and the stream completes immediately.
+     */
+    public SseEmitter subscribe(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new IllegalArgumentException("Job not found: " + jobId);
+        }
+        // 0 means no timeout; the stream ends when the job does
+        SseEmitter emitter = new SseEmitter(0L);
+        job.attach(emitter);
+        return emitter;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        Instant cutoff = Instant.now().minus(properties.getJob().getRetention());
+        jobs.values().removeIf(j -> j.isFinished() && j.updatedAt.isBefore(cutoff));
+    }
+
+    private void run(Job job, MrAnalyzeRequest req) {
+        try {
+            MrAnalyzeResponse resp = mrAnalyzeService.analyzeMr(req, job);
+            job.finish(resp, null);
+        } catch (Exception e) {
+            log.error("MR analysis job failed. jobId={}, mrUrl={}", job.id, req.getMrUrl(), e);
+            job.finish(null, e.getMessage());
+        }
+    }
+
+    private static final class Job implements AnalysisProgressListener {
+        private final String id;
+        private final String mrUrl;
+        private final Instant createdAt = Instant.now();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        private AnalysisStatus status = AnalysisStatus.IN_PROGRESS;
+        private int totalFiles;
+        private int completedFiles;
+        private int failedFiles;
+        private int findings;
+        private MrAnalyzeResponse result;
+        private String errorMessage;
+        private volatile Instant updatedAt = createdAt;
+
+        private Job(String id, String mrUrl) {
+            this.id = id;
+            this.mrUrl = mrUrl;
+        }
+
+        // State changes and payloads are made under the job's lock; frames are sent outside it, so a
+        // slow SSE client holds up neither the analysis thread nor pollers reading snapshot()
+
+        @Override
+        public void onStarted(int totalFiles) {
+            Map<String, Object> payload;
+            synchronized (this) {
+                this.totalFiles = totalFiles;
+                this.updatedAt = Instant.now();
+                payload = progressPayload(null, true);
+            }
+            broadcast("progress", payload);
+        }
+
+        @Override
+        public void onFileDone(String path, int found, boolean success) {
+            Map<String, Object> payload;
+            synchronized (this) {
+                completedFiles++;
+                if (!success) {
+                    failedFiles++;
+                }
+                findings += found;
+                updatedAt = Instant.now();
+                payload = progressPayload(path, success);
+            }
+            broadcast("progress", payload);
+        }
+
+        void finish(MrAnalyzeResponse resp, String error) {
+            List<SseEmitter> targets;
+            synchronized (this) {
+                result = resp;
+                errorMessage = error != null ? error : (resp == null ? null : resp.getErrorMessage());
+                status = resp != null ? resp.getStatus() : AnalysisStatus.FAILURE;
+                updatedAt = Instant.now();
+                targets = List.copyOf(emitters);
+                emitters.clear();
+            }
+            sendFinal(targets);
+        }
+
+        void attach(SseEmitter emitter) {
+            Map<String, Object> payload;
+            synchronized (this) {
+                if (isFinished()) {
+                    payload = null;
+                } else {
+                    payload = progressPayload(null, true);
+                    emitter.onCompletion(() -> emitters.remove(emitter));
+                    emitter.onTimeout(() -> emitters.remove(emitter));
+                    emitter.onError(e -> emitters.remove(emitter));
+                    emitters.add(emitter);
+                }
+            }
+            if (payload == null) {
+                sendFinal(List.of(emitter));
+            } else {
+                send(emitter, "progress", payload);
+            }
+        }
+
+        synchronized boolean isFinished() {
+            return status != AnalysisStatus.IN_PROGRESS;
+        }
+
+        synchronized MrAnalysisJobResponse snapshot() {
+            return MrAnalysisJobResponse.builder()
+                    .jobId(id)
+                    .status(status)
+                    .mrUrl(mrUrl)
+                    .totalFiles(totalFiles)
+                    .completedFiles(completedFiles)
+                    .failedFiles(failedFiles)
+                    .findings(findings)
+                    .createdAt(createdAt)
+                    .updatedAt(updatedAt)
+                    .result(result)
+                    .errorMessage(errorMessage)
+                    .build();
+        }
+
+        private Map<String, Object> progressPayload(String path, boolean success) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("jobId", id);
+            payload.put("status", status);
+            payload.put("totalFiles", totalFiles);
+            payload.put("completedFiles", completedFiles);
+            payload.put("findings", findings);
+            if (path != null) {
+                payload.put("path", path);
+                payload.put("success", success);
+            }
+            payload.put("ts", Instant.now().toString());
+            return payload;
+        }
+
+        private void sendFinal(List<SseEmitter> targets) {
+            MrAnalysisJobResponse snap = snapshot();
+            String name = snap.getStatus() == AnalysisStatus.FAILURE ? "error" : "done";
+            for (SseEmitter emitter : targets) {
+                if (send(emitter, name, snap)) {
+                    emitter.complete();
+                }
+            }
+        }
+
+        private void broadcast(String name, Object payload) {
+            for (SseEmitter emitter : emitters) {
+                send(emitter, name, payload);
+            }
+        }
+
+        /**
+         * Send one frame; an emitter that fails is dropped and completed.
+         */
+        private boolean send(SseEmitter emitter, String name, Object payload) {
+            try {
+                emitter.send(SseEmitter.event().name(name).id(id).data(payload));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                // Client went away, or the emitter was completed concurrently
+                log.warn("Failed to send SSE {} frame for job {}: {}", name, id, e.getMessage());
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.repository.MrAnalysisLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cross-node mutual exclusion for analyses of one (project, mr, sha), backed by a row in
+ * {@code mr_analysis_lease}.
+ * <p>
+ * The holder renews its lease while the analysis runs and deletes it when done; a node that died
+ * mid-analysis stops renewing, so its lease expires after {@code mr.analysis.coalesce.lease-ttl} and
+ * can be taken over. Nodes that find the lease held poll until it is gone and then run the action
+ * themselves, which by then finds the stored result instead of calling the LLM again.
+ */
+@Slf4j
+@Service
+public class MrAnalysisLeaseService {
+
+    public record Key(long projectId, long mrId, String sha) {
+    }
+
+    private final MrAnalysisLeaseRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final MrAnalysisProperties.Coalesce cfg;
+    private final String owner;
+    private final Set<Key> held = ConcurrentHashMap.newKeySet();
+
+    public MrAnalysisLeaseService(MrAnalysisLeaseRepository repository,
+                                  TransactionTemplate transactionTemplate,
+                                  MrAnalysisProperties properties) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.cfg = properties.getCoalesce();
+        this.owner = hostName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Run {@code action} while holding the lease for {@code key}, waiting for another node to finish
+     * first if it holds it. Callers on this node must already be coalesced (one caller per key).
+     */
+    public <T> T runExclusive(Key key, Supplier<T> action) {
+        if (!cfg.isLeaseEnabled()) {
+            return action.get();
+        }
+        long deadline = System.nanoTime() + cfg.getWaitTimeout().toNanos();
+        boolean waited = false;
+        while (!tryAcquire(key)) {
+            if (!waited) {
+                log.info("Analysis of projectId={}, mrId={}, sha={} is running on another node; waiting for it",
+                        key.projectId(), key.mrId(), key.sha());
+                waited = true;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Timed out after " + cfg.getWaitTimeout()
+                        + " waiting for another node to finish analyzing sha " + key.sha());
+            }
+            sleep(cfg.getPollInterval());
+        }
+        held.add(key);
+        try {
+            return action.get();
+        } finally {
+            held.remove(key);
+            release(key);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mr.analysis.coalesce.renew-interval-ms:30000}")
+    public void renewHeld() {
+        for (Key key : held) {
+            try {
+                Integer renewed = transactionTemplate.execute(status ->
+                        repository.renew(key.projectId(), key.mrId(), key.sha(), owner, ttlSeconds()));
+                if (renewed == null || renewed == 0) {
+                    // Another node took over an expired lease; both finish, the unique index keeps one mr_info row
+                    log.warn("Lost analysis lease for projectId={}, mrId={}, sha={}", key.projectId(), key.mrId(), key.sha());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to renew analysis lease for sha {}", key.sha(), e);
+            }
+        }
+    }
+
+    private boolean tryAcquire(Key key) {
+        Integer acquired = transactionTemplate.execute(status ->
+                repository.tryAcquire(key.projectId(), key.mrId(), key.sha(), owner, ttlSeconds()));
+        return acquired != null && acquired > 0;
+    }
+
+    private void release(Key key) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    repository.release(key.projectId(), key.mrId(), key.sha(), owner));
+        } catch (Exception e) {
+            // The lease expires on its own
+            log.warn("Failed to release analysis lease for sha {}", key.sha(), e);
+        }
+    }
+
+    private double ttlSeconds() {
+        return cfg.getLeaseTtl().toMillis() / 1000.0;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an analysis lease", e);
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
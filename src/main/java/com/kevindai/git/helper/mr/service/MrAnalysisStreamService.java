@@ -0,0 +1,153 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.mr.dto.AnalysisStatus;
+import com.kevindai.git.helper.mr.dto.MrAnalyzeRequest;
+import com.kevindai.git.helper.mr.dto.MrAnalyzeResponse;
+import com.kevindai.git.helper.mr.dto.llm.Finding;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs an analysis on the job executor and streams it over SSE: a {@code finding} frame for each
+ * finding as the model produces it (a preview, not yet stored), a {@code file-done} frame with the
+ * persisted findings of each file as soon as its LLM response is stored, then {@code done} with the
+ * full response (or {@code error}). Findings carry their detail ids, so they can be adopted while
+ * the rest of the MR is still being analyzed.
+ * <p>
+ * A client that disconnects does not cancel the analysis; its results are stored as usual.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MrAnalysisStreamService {
+
+    private final MrAnalyzeService mrAnalyzeService;
+    private final Executor mrJobExecutor;
+
+    public SseEmitter stream(MrAnalyzeRequest req) {
+        // 0 means no timeout; the stream ends when the analysis does
+        SseEmitter emitter = new SseEmitter(0L);
+        StreamListener listener = new StreamListener(emitter, UUID.randomUUID().toString());
+        emitter.onCompletion(listener::close);
+        emitter.onTimeout(listener::close);
+        emitter.onError(e -> listener.close());
+
+        Map<String, Object> start = listener.payload();
+        start.put("mrUrl", req.getMrUrl());
+        start.put("status", AnalysisStatus.IN_PROGRESS);
+        listener.send("start", start);
+        try {
+            mrJobExecutor.execute(() -> run(req, listener));
+        } catch (TaskRejectedException e) {
+            listener.fail("Too many analyses running, please retry later");
+        }
+        return emitter;
+    }
+
+    private void run(MrAnalyzeRequest req, StreamListener listener) {
+        try {
+            MrAnalyzeResponse resp = mrAnalyzeService.analyzeMr(req, listener);
+            listener.finish(resp);
+        } catch (Exception e) {
+            log.error("Streaming MR analysis failed. mrUrl={}", req.getMrUrl(), e);
+            listener.fail(e.getMessage());
+        }
+    }
+
+    private static final class StreamListener implements AnalysisProgressListener {
+        private final SseEmitter emitter;
+        private final String correlationId;
+        private int totalFiles;
+        private int completedFiles;
+        private int findings;
+        private boolean closed;
+
+        private StreamListener(SseEmitter emitter, String correlationId) {
+            this.emitter = emitter;
+            this.correlationId = correlationId;
+        }
+
+        @Override
+        public synchronized void onStarted(int totalFiles) {
+            this.totalFiles = totalFiles;
+            Map<String, Object> payload = payload();
+            payload.put("totalFiles", totalFiles);
+            send("files", payload);
+        }
+
+        @Override
+        public synchronized void onFindingParsed(Finding finding) {
+            Map<String, Object> payload = payload();
+            payload.put("finding", finding);
+            send("finding", payload);
+        }
+
+        @Override
+        public synchronized void onFileDone(String path, List<Finding> found, boolean success) {
+            completedFiles++;
+            findings += found.size();
+            Map<String, Object> payload = payload();
+            payload.put("path", path);
+            payload.put("success", success);
+            payload.put("findings", found);
+            payload.put("completedFiles", completedFiles);
+            payload.put("totalFiles", totalFiles);
+            send("file-done", payload);
+        }
+
+        synchronized void finish(MrAnalyzeResponse resp) {
+            send("done", resp);
+            if (!closed) {
+                closed = true;
+                emitter.complete();
+            }
+        }
+
+        synchronized void fail(String message) {
+            Map<String, Object> payload = payload();
+            payload.put("message", message);
+            payload.put("completedFiles", completedFiles);
+            payload.put("findings", findings);
+            send("error", payload);
+            if (!closed) {
+                closed = true;
+                emitter.complete();
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        Map<String, Object> payload() {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("correlationId", correlationId);
+            payload.put("ts", Instant.now().toString());
+            return payload;
+        }
+
+        synchronized void send(String name, Object data) {
+            if (closed) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).id(correlationId).data(data));
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; keep analyzing, stop sending
+                log.warn("Failed to send SSE {} frame: {}", name, e.getMessage());
+                closed = true;
+            }
+        }
+    }
+}
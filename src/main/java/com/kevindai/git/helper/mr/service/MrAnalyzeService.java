@@ -1,24 +1,40 @@
 package com.kevindai.git.helper.mr.service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
+import com.kevindai.git.helper.config.MrAnalysisProperties;
 import com.kevindai.git.helper.entity.MrAnalysisDetailEntity;
 import com.kevindai.git.helper.entity.MrInfoEntity;
 import com.kevindai.git.helper.mr.dto.AnalysisStatus;
 import com.kevindai.git.helper.mr.dto.MrAnalyzeRequest;
 import com.kevindai.git.helper.mr.dto.MrAnalyzeResponse;
+import com.kevindai.git.helper.mr.dto.ParsedMrUrl;
 import com.kevindai.git.helper.mr.dto.gitlab.MrDetail;
 import com.kevindai.git.helper.mr.dto.llm.Finding;
 import com.kevindai.git.helper.mr.dto.llm.LlmAnalysisReport;
+import com.kevindai.git.helper.mr.util.SingleFlight;
+import com.kevindai.git.helper.repository.FindingRow;
 import com.kevindai.git.helper.repository.MrInfoEntityRepository;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 @Slf4j
@@ -34,101 +50,269 @@ public class MrAnalyzeService {
     private final GitTokenService gitTokenService;
     private final GitLabRequestContext gitLabRequestContext;
     private final Executor mrAnalysisExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final LlmRequestPlanner requestPlanner;
+    private final MrIncrementalService incrementalService;
+    private final MrDiffSnapshotService diffSnapshotService;
+    private final AnalysisStageMetrics stageMetrics;
+    private final MrAnalysisProperties properties;
+    private final MrAnalysisLeaseService leaseService;
+    private final SingleFlight<MrAnalysisLeaseService.Key, LlmAnalysisReport> inFlight = new SingleFlight<>();
 
-    @Transactional
     public MrAnalyzeResponse analyzeMr(MrAnalyzeRequest req) {
+        return analyzeMr(req, AnalysisProgressListener.NOOP);
+    }
+
+    /**
+     * Runs the analysis as a sequence of stages: fetch MR -> prepare mr_info -> fetch/annotate diffs
+     * -> LLM fan-out -> persist -> finalize. Only prepare, persist and finalize touch the database and
+     * each runs in its own short transaction, so no JDBC connection is held during GitLab or LLM calls.
+     * <p>
+     * Concurrent analyses of the same (project, mr, sha) are coalesced: on this node they share one
+     * in-flight run, across nodes a lease row makes later nodes wait and then read the stored result.
+     * Only the caller that runs the analysis receives per-file progress.
+     */
+    public MrAnalyzeResponse analyzeMr(MrAnalyzeRequest req, AnalysisProgressListener listener) {
         var parsedUrl = gitLabService.parseMrUrl(req.getMrUrl());
         // Resolve token by group full path
         String groupFullPath = parsedUrl.getGroupFullPath();
         String token = gitTokenService.resolveTokenForGroup(groupFullPath);
-        gitLabRequestContext.setGroupFullPath(groupFullPath);
-        gitLabRequestContext.setToken(token);
+        var scope = new GitLabRequestContext.Scope(groupFullPath, token);
+        return gitLabRequestContext.callWith(scope, () -> runAnalysis(req, parsedUrl, listener));
+    }
+
+    private MrAnalyzeResponse runAnalysis(MrAnalyzeRequest req, ParsedMrUrl parsedUrl, AnalysisProgressListener listener) {
+        String groupFullPath = parsedUrl.getGroupFullPath();
+        // Stage: fetch MR metadata (no transaction)
+        long projectId = stageMetrics.time(AnalysisStageMetrics.FETCH,
+                () -> gitLabService.resolveProjectId(groupFullPath, parsedUrl.getProjectPath()));
+        MrDetail mrDetail = stageMetrics.time(AnalysisStageMetrics.FETCH,
+                () -> gitLabService.fetchMrDetails(projectId, parsedUrl.getMrId()));
+        if (mrDetail == null) {
+            throw new IllegalArgumentException("Cannot find MR details for MR ID: " + parsedUrl.getMrId());
+        }
+
+        var key = new MrAnalysisLeaseService.Key(projectId, parsedUrl.getMrId(), mrDetail.getSha());
+        LlmAnalysisReport report = inFlight.run(key,
+                () -> leaseService.runExclusive(key, () -> analyzeSha(parsedUrl, projectId, mrDetail, listener)));
+        return MrAnalyzeResponse.builder()
+                .status(AnalysisStatus.SUCCESS)
+                .mrUrl(req.getMrUrl())
+                .analysisResult(report)
+                .build();
+    }
 
+    private LlmAnalysisReport analyzeSha(ParsedMrUrl parsedUrl, long projectId, MrDetail mrDetail, AnalysisProgressListener listener) {
+        // Stage: prepare mr_info row (short transaction)
+        Prepared prepared = stageMetrics.time(AnalysisStageMetrics.PREPARE, () -> prepareInTransaction(projectId, parsedUrl.getMrId(), mrDetail));
+        MrInfoEntity targetInfo = prepared.info();
+        if (prepared.complete()) {
+            log.info("MR sha already analyzed, skip LLM. projectId={}, mrId={}, sha={}", projectId, parsedUrl.getMrId(), mrDetail.getSha());
+            return buildReport(targetInfo, prepared.existingDetails());
+        }
+
+        // Incremental mode: files unchanged since the previously analyzed sha keep their findings
+        boolean incremental = properties.getIncremental().isEnabled();
+        MrIncrementalService.Baseline baseline = incremental
+                ? stageMetrics.time(AnalysisStageMetrics.PREPARE, () -> incrementalService.loadBaseline(targetInfo))
+                : MrIncrementalService.Baseline.EMPTY;
+        Map<String, MrIncrementalService.FileDigest> digests = new LinkedHashMap<>();
+        List<MrIncrementalService.FileDigest> unchanged = new ArrayList<>();
+        List<String> skippedPaths = new ArrayList<>();
+        Set<String> failedPaths = new HashSet<>();
+
+        // LLM results are handed to the persist stage through a bounded queue as each request completes
+        BlockingQueue<AnalysisResult> completed = new ArrayBlockingQueue<>(
+                Math.max(1, properties.getPipeline().getPersistQueueCapacity()));
+        AtomicBoolean abandoned = new AtomicBoolean();
+        List<AnalysisResult> ready = new ArrayList<>();
+        Map<String, FileProgress> progress = new HashMap<>();
+        List<LlmRequestPlanner.LlmRequest> requests = new ArrayList<>();
+        Consumer<LlmRequestPlanner.LlmRequest> submit = request -> {
+            requests.add(request);
+            request.paths().forEach(p -> progress.computeIfAbsent(p, k -> new FileProgress()).pending++);
+            CompletableFuture.runAsync(() -> {
+                if (abandoned.get()) {
+                    return;
+                }
+                LlmAnalysisReport piece = null;
+                try {
+                    piece = stageMetrics.time(AnalysisStageMetrics.LLM,
+                            () -> llmAnalysisService.analyzeDiff(request.content(), request.context(), listener::onFindingParsed));
+                } catch (Exception e) {
+                    log.error("Error analyzing diff for files: {}", request.paths(), e);
+                } finally {
+                    handOff(completed, new AnalysisResult(request, piece), abandoned);
+                }
+            }, mrAnalysisExecutor);
+        };
+
+        // Stage: fetch diffs page by page. Each file is annotated, checked against the baseline and
+        // packed into LLM requests under the token budget as soon as it is parsed, so LLM work on
+        // early files overlaps with fetching the rest (no transaction)
+        AddressableDiffBuilder.Annotator annotator = addressableDiffBuilder.annotator();
+        LlmRequestPlanner.Packer packer = requestPlanner.packer();
+        AddressableDiffBuilder.AnnotatedDiff annotated;
+        // Everything stored for this sha, kept in memory so finalize need not read it back
+        List<MrAnalysisDetailEntity> stored;
         try {
-            long projectId = gitLabService.resolveProjectId(groupFullPath, parsedUrl.getProjectPath());
-            MrDetail mrDetail = gitLabService.fetchMrDetails(projectId, parsedUrl.getMrId());
-            if (mrDetail == null) {
-                throw new IllegalArgumentException("Cannot find MR details for MR ID: " + parsedUrl.getMrId());
+            stageMetrics.time(AnalysisStageMetrics.FETCH, () -> gitLabService.streamMrDiffs(projectId, parsedUrl.getMrId(), diff -> {
+                var section = stageMetrics.time(AnalysisStageMetrics.ANNOTATE, () -> annotator.add(diff));
+                if (!StringUtils.hasText(section.path())) {
+                    skippedPaths.add(section.path());
+                    return;
+                }
+                if (incremental) {
+                    var digest = incrementalService.digest(section);
+                    digests.put(section.path(), digest);
+                    if (incrementalService.isUnchanged(baseline, digest)) {
+                        unchanged.add(digest);
+                        return;
+                    }
+                }
+                packer.add(section, submit);
+                // Keep workers from blocking on a full queue while the fetch is still running
+                completed.drainTo(ready);
+            }));
+            packer.flush(submit);
+            // The anchor index is complete only once every page is in; persistence needs it
+            annotated = annotator.finish();
+            listener.onStarted(annotator.size());
+            skippedPaths.forEach(path -> listener.onFileDone(path, List.of(), false));
+
+            Map<String, List<MrAnalysisDetailEntity>> carriedByPath = new LinkedHashMap<>();
+            List<MrAnalysisDetailEntity> carried = new ArrayList<>();
+            for (MrIncrementalService.FileDigest digest : unchanged) {
+                var carriedForFile = incrementalService.carryOver(baseline, digest, targetInfo, annotated.getIndex());
+                carriedByPath.put(digest.path(), carriedForFile);
+                carried.addAll(carriedForFile);
+            }
+            log.info("Planned {} LLM requests for {} files ({} findings carried over from sha {}). projectId={}, mrId={}",
+                    requests.size(), progress.size(), carried.size(),
+                    baseline.isEmpty() ? "-" : baseline.info().getSha(), projectId, parsedUrl.getMrId());
+            if (!carried.isEmpty()) {
+                stageMetrics.time(AnalysisStageMetrics.PERSIST, () -> mrAnalysisDetailService.saveAll(carried));
             }
+            // Saved entities carry their ids now
+            carriedByPath.forEach((path, details) -> listener.onFileDone(path, toFindings(details), true));
+            stored = new ArrayList<>(carried);
 
-            var existingMrInfo = mrInfoEntityRepository.findByProjectIdAndMrIdAndSha(projectId, (long) parsedUrl.getMrId(), mrDetail.getSha());
-            MrInfoEntity targetInfo;
-            if (existingMrInfo.isPresent()) {
-                targetInfo = existingMrInfo.get();
-                var details = mrAnalysisDetailService.loadDetails(targetInfo.getId());
-                if (details != null && !details.isEmpty()) {
-                    log.info("MR unchanged with existing details, skip LLM. projectId={}, mrId={}, sha={}", projectId, parsedUrl.getMrId(), mrDetail.getSha());
-                    LlmAnalysisReport report = buildReportFromDetails(targetInfo, details);
-                    return MrAnalyzeResponse.builder()
-                            .status(AnalysisStatus.SUCCESS)
-                            .mrUrl(req.getMrUrl())
-                            .analysisResult(report)
-                            .build();
+            // Stage: persist each result in its own short transaction as it arrives
+            for (int i = 0; i < requests.size(); i++) {
+                AnalysisResult r = i < ready.size() ? ready.get(i) : takeResult(completed);
+                boolean success = r.piece() != null;
+                List<MrAnalysisDetailEntity> saved = List.of();
+                if (success) {
+                    try {
+                        saved = stageMetrics.time(AnalysisStageMetrics.PERSIST,
+                                () -> mrAnalysisDetailService.persist(targetInfo, r.piece(), annotated.getIndex()));
+                    } catch (Exception e) {
+                        log.error("Persist failed for files: {}", r.request().paths(), e);
+                        success = false;
+                    }
+                }
+                stored.addAll(saved);
+                Map<String, List<MrAnalysisDetailEntity>> found = detailsByPath(r.request().paths(), saved);
+                for (String path : new LinkedHashSet<>(r.request().paths())) {
+                    FileProgress fp = progress.get(path);
+                    fp.details.addAll(found.getOrDefault(path, List.of()));
+                    fp.failed |= !success;
+                    if (--fp.pending == 0) {
+                        if (fp.failed) {
+                            failedPaths.add(path);
+                        }
+                        listener.onFileDone(path, toFindings(fp.details), !fp.failed);
+                    }
                 }
-            } else {
-                // Create a new mr_info row for this sha (keep history by sha)
-                targetInfo = converter(mrDetail);
-                targetInfo = mrInfoEntityRepository.save(targetInfo);
-                log.info("MR info created for new sha. projectId={}, mrId={}, sha={}", projectId, parsedUrl.getMrId(), mrDetail.getSha());
             }
+        } finally {
+            // Whatever ends this stage (done, or an exception anywhere above), workers still
+            // waiting to hand off a result must not wait for a consumer that is gone
+            abandoned.set(true);
+        }
 
-            var diffs = gitLabService.fetchMrDiffs(projectId, parsedUrl.getMrId());
-            var annotated = addressableDiffBuilder.buildAnnotatedWithIndex(diffs);
-            // Stage 1: analyze per-file to stay within token limits
-            List<CompletableFuture<AnalysisResult>> futures = diffs.stream()
-                    .map(d -> {
-                        String path = StringUtils.hasText(d.getNew_path()) ? d.getNew_path() : d.getOld_path();
-                        if (!StringUtils.hasText(path)) {
-                            return null;
-                        }
-                        String fileSection = AddressableDiffBuilder.sliceAnnotatedForPath(annotated.getContent(), path);
-                        if (!StringUtils.hasText(fileSection)) {
-                            return null;
-                        }
-                        return CompletableFuture.supplyAsync(() -> {
-                            try {
-                                LlmAnalysisReport piece = llmAnalysisService.analyzeDiff(fileSection, java.util.List.of(d));
-                                return new AnalysisResult(path, piece);
-                            } catch (Exception e) {
-                                log.error("Error analyzing diff for file: {}", path, e);
-                                return null; // swallow; will be filtered later
-                            }
-                        }, mrAnalysisExecutor);
-                    })
-                    .filter(Objects::nonNull)
-                    .toList();
-
-            // Wait for all (propagate interruption if any)
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-
-            // Gather successful results
-            List<AnalysisResult> results = futures.stream()
-                    .map(CompletableFuture::join)
-                    .filter(r -> r != null && r.piece() != null)
-                    .toList();
-
-            // Persist sequentially (single thread / current transaction)
-            for (AnalysisResult r : results) {
-                try {
-                    mrAnalysisDetailService.persist(targetInfo, r.piece(), annotated.getIndex());
-                } catch (Exception e) {
-                    log.error("Persist failed for file: {}", r.path(), e);
+        // Stage: finalize - build report from the stored entities (ids assigned on save) and save summary
+        return stageMetrics.time(AnalysisStageMetrics.FINALIZE,
+                () -> transactionTemplate.execute(status -> {
+                    if (incremental) {
+                        // Failed files get no digest, so the next push analyzes them again
+                        incrementalService.saveDigests(targetInfo, digests.values().stream()
+                                .filter(d -> !failedPaths.contains(d.path()))
+                                .toList());
+                    }
+                    diffSnapshotService.save(targetInfo, mrDetail.getDiff_refs(), annotated);
+                    return finalizeReport(targetInfo, stored);
+                }));
+    }
+
+    /**
+     * Run {@link #prepare} in its own transaction. Losing the insert race on the unique
+     * (project_id, mr_id, sha) index to another node (lease disabled or expired) rolls back that
+     * transaction; the retry then reads the winner's row.
+     */
+    private Prepared prepareInTransaction(long projectId, int mrId, MrDetail mrDetail) {
+        try {
+            return transactionTemplate.execute(status -> prepare(projectId, mrId, mrDetail));
+        } catch (DataIntegrityViolationException e) {
+            log.info("mr_info for sha {} was created concurrently, reading it. projectId={}, mrId={}", mrDetail.getSha(), projectId, mrId);
+            return transactionTemplate.execute(status -> prepare(projectId, mrId, mrDetail));
+        }
+    }
+
+    private Prepared prepare(long projectId, int mrId, MrDetail mrDetail) {
+        var existingMrInfo = mrInfoEntityRepository.findByProjectIdAndMrIdAndSha(projectId, (long) mrId, mrDetail.getSha());
+        if (existingMrInfo.isPresent()) {
+            MrInfoEntity info = existingMrInfo.get();
+            if (info.getAnalysisCompletedAt() != null) {
+                return new Prepared(info, mrAnalysisDetailService.loadRows(info.getId()), true);
+            }
+            // An earlier run died before finalize: its findings are partial, analyze the sha again
+            int dropped = mrAnalysisDetailService.deleteAll(info.getId());
+            log.info("Re-running unfinished analysis, dropped {} partial findings. projectId={}, mrId={}, sha={}",
+                    dropped, projectId, mrId, mrDetail.getSha());
+            return new Prepared(info, List.of(), false);
+        }
+        // Create a new mr_info row for this sha (keep history by sha)
+        MrInfoEntity created = mrInfoEntityRepository.save(converter(mrDetail));
+        log.info("MR info created for new sha. projectId={}, mrId={}, sha={}", projectId, mrId, mrDetail.getSha());
+        return new Prepared(created, List.of(), false);
+    }
+
+    private LlmAnalysisReport finalizeReport(MrInfoEntity targetInfo, List<MrAnalysisDetailEntity> stored) {
+        List<MrAnalysisDetailEntity> savedDetails = new ArrayList<>(stored);
+        savedDetails.sort(MrAnalysisDetailService.BY_SEVERITY);
+        LlmAnalysisReport responseReport = buildReport(targetInfo, savedDetails.stream().map(FindingRow::of).toList());
+        Instant now = Instant.now();
+        targetInfo.setUpdatedAt(now);
+        targetInfo.setAnalysisCompletedAt(now);
+        targetInfo.setSummaryMarkdown(responseReport.getSummaryMarkdown());
+        mrInfoEntityRepository.save(targetInfo);
+        return responseReport;
+    }
+
+    /**
+     * Queue a finished result for the persist stage, waiting while the queue is full. Gives up once
+     * the persist stage has ended, normally or not, and nobody will drain the queue any more.
+     */
+    private static void handOff(BlockingQueue<AnalysisResult> queue, AnalysisResult result, AtomicBoolean abandoned) {
+        try {
+            while (!queue.offer(result, 1, TimeUnit.SECONDS)) {
+                if (abandoned.get()) {
+                    return;
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing off analysis result for " + result.request().paths(), e);
+        }
+    }
 
-            // Build final report from persisted details (ensures IDs correct) and save summary
-            var savedDetails = mrAnalysisDetailService.loadDetails(targetInfo.getId());
-            LlmAnalysisReport responseReport = buildReportFromDetails(targetInfo, savedDetails);
-            targetInfo.setUpdatedAt(Instant.now());
-            targetInfo.setSummaryMarkdown(responseReport.getSummaryMarkdown());
-            mrInfoEntityRepository.save(targetInfo);
-            return MrAnalyzeResponse.builder()
-                    .status(AnalysisStatus.SUCCESS)
-                    .mrUrl(req.getMrUrl())
-                    .analysisResult(responseReport)
-                    .build();
-        } finally {
-            gitLabRequestContext.clear();
+    private static AnalysisResult takeResult(BlockingQueue<AnalysisResult> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for analysis results", e);
         }
     }
 
@@ -140,52 +324,60 @@ public class MrAnalyzeService {
         return report;
     }
 
-    private LlmAnalysisReport buildReportFromDetails(MrInfoEntity mrInfo, List<MrAnalysisDetailEntity> details) {
+    private LlmAnalysisReport buildReport(MrInfoEntity mrInfo, List<FindingRow> details) {
         if (details == null || details.isEmpty()) {
             return buildNoIssuesReport();
         }
         var report = new LlmAnalysisReport();
         report.setSchemaVersion("1.0");
         // promptType may be unknown here; leave null
-        var findings = new java.util.ArrayList<Finding>();
+        report.setFindings(details.stream().map(MrAnalyzeService::toFinding).toList());
+        report.setSummaryMarkdown(mrInfo.getSummaryMarkdown());
+        return report;
+    }
+
+    private static List<Finding> toFindings(List<MrAnalysisDetailEntity> details) {
+        List<Finding> findings = new ArrayList<>(details.size());
         for (MrAnalysisDetailEntity d : details) {
-            var f = new Finding();
-            if (d.getId() != null) {
-                f.setId(String.valueOf(d.getId()));
-            }
-            f.setSeverity(d.getSeverity());
-            f.setCategory(d.getCategory());
-            f.setTitle(d.getTitle());
-            f.setDescription(d.getDescription());
-            f.setStatus(d.getStatus());
-            if (d.getFile() != null) {
-                var loc = new com.kevindai.git.helper.mr.dto.llm.Location();
-                loc.setFile(d.getFile());
-                loc.setStartLine(d.getStartLine());
-                loc.setLineType(d.getLineType());
-                loc.setAnchorId(d.getAnchorId());
-                loc.setAnchorSide(d.getAnchorSide());
-                f.setLocation(loc);
-            }
-            f.setEvidence(d.getEvidence());
-            if (StringUtils.hasText(d.getRemediationSteps())) {
-                var rem = new com.kevindai.git.helper.mr.dto.llm.Remediation();
-                rem.setSteps(d.getRemediationSteps());
-                f.setRemediation(rem);
-            }
-            f.setConfidence(d.getConfidence());
-            if (StringUtils.hasText(d.getTagsJson())) {
-                try {
-                    var tags = com.kevindai.git.helper.utils.JsonUtils.parseArray(d.getTagsJson(), String.class);
-                    f.setTags(tags);
-                } catch (Exception ignored) {
-                }
+            findings.add(toFinding(FindingRow.of(d)));
+        }
+        return findings;
+    }
+
+    private static Finding toFinding(FindingRow d) {
+        var f = new Finding();
+        if (d.id() != null) {
+            f.setId(String.valueOf(d.id()));
+        }
+        f.setSeverity(d.severity());
+        f.setCategory(d.category());
+        f.setTitle(d.title());
+        f.setDescription(d.description());
+        f.setStatus(d.status());
+        if (d.file() != null) {
+            var loc = new com.kevindai.git.helper.mr.dto.llm.Location();
+            loc.setFile(d.file());
+            loc.setStartLine(d.startLine());
+            loc.setLineType(d.lineType());
+            loc.setAnchorId(d.anchorId());
+            loc.setAnchorSide(d.anchorSide());
+            f.setLocation(loc);
+        }
+        f.setEvidence(d.evidence());
+        if (StringUtils.hasText(d.remediationSteps())) {
+            var rem = new com.kevindai.git.helper.mr.dto.llm.Remediation();
+            rem.setSteps(d.remediationSteps());
+            f.setRemediation(rem);
+        }
+        f.setConfidence(d.confidence());
+        if (StringUtils.hasText(d.tagsJson())) {
+            try {
+                var tags = com.kevindai.git.helper.utils.JsonUtils.parseArray(d.tagsJson(), String.class);
+                f.setTags(tags);
+            } catch (Exception ignored) {
             }
-            findings.add(f);
         }
-        report.setFindings(findings);
-        report.setSummaryMarkdown(mrInfo.getSummaryMarkdown());
-        return report;
+        return f;
     }
 
     private MrInfoEntity converter(MrDetail mrDetail) {
@@ -206,7 +398,34 @@ public class MrAnalyzeService {
         return entity;
     }
 
-    private record AnalysisResult(String path, LlmAnalysisReport piece) {
+    /**
+     * Attribute the persisted findings of one LLM response to the files of its request; the file was
+     * resolved from the anchor when possible. Findings that cannot be attributed count for the first
+     * file of the request.
+     */
+    private static Map<String, List<MrAnalysisDetailEntity>> detailsByPath(List<String> paths, List<MrAnalysisDetailEntity> saved) {
+        Map<String, List<MrAnalysisDetailEntity>> byPath = new HashMap<>();
+        for (MrAnalysisDetailEntity d : saved) {
+            String path = d.getFile();
+            if (path == null || !paths.contains(path)) {
+                path = paths.getFirst();
+            }
+            byPath.computeIfAbsent(path, k -> new ArrayList<>()).add(d);
+        }
+        return byPath;
+    }
+
+    private record AnalysisResult(LlmRequestPlanner.LlmRequest request, LlmAnalysisReport piece) {
+
+    }
+
+    private static final class FileProgress {
+        private int pending;
+        private final List<MrAnalysisDetailEntity> details = new ArrayList<>();
+        private boolean failed;
+    }
+
+    private record Prepared(MrInfoEntity info, List<FindingRow> existingDetails, boolean complete) {
 
     }
 
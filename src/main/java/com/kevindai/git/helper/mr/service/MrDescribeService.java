@@ -26,28 +26,35 @@ public class MrDescribeService {
     private final GitTokenService gitTokenService;
     private final GitLabRequestContext gitLabRequestContext;
     private final GitLabUrlParser urlParser;
+    private final LlmConcurrencyLimiter llmLimiter;
 
     public Flux<String> streamDescription(String mrNewUrl) {
         return Flux.defer(() -> {
             try {
                 var ctx = urlParser.parseNewMrUrl(mrNewUrl);
+                // Scope the token to the compare call only; the LLM stream below may continue on other threads
+                GitLabRequestContext.Scope scope = null;
                 if (StringUtils.hasText(ctx.groupFullPath())) {
                     String token = gitTokenService.resolveTokenForGroup(ctx.groupFullPath());
-                    gitLabRequestContext.setGroupFullPath(ctx.groupFullPath());
-                    gitLabRequestContext.setToken(token);
+                    scope = new GitLabRequestContext.Scope(ctx.groupFullPath(), token);
                 }
-                CompareResponse compare = gitLabService.compare(ctx.projectId(), ctx.sourceBranch(), ctx.targetBranch(), true, true);
+                CompareResponse compare = gitLabRequestContext.callWith(scope,
+                        () -> gitLabService.compare(ctx.projectId(), ctx.sourceBranch(), ctx.targetBranch(), true, true));
                 List<MrDiff> diffs = Optional.ofNullable(compare.getDiffs()).orElse(List.of());
                 String merged = addressableDiffBuilder.buildAnnotatedWithIndex(diffs).getContent();
                 if (!StringUtils.hasText(merged)) {
                     merged = mergePlain(diffs);
                 }
-                // Stream tokens/content from LLM
+                // Stream tokens/content from LLM; the slot is held until the stream ends. Stream length
+                // depends on the output, so only overload errors feed back into the limit
+                var permit = llmLimiter.acquire();
                 return chatClient
                         .prompt(MrDescriptionPrompt.SYSTEM_PROMPT)
                         .user(merged)
                         .stream()
                         .content()
+                        .doOnError(e -> permit.release(LlmConcurrencyLimiter.classify(e)))
+                        .doFinally(signal -> permit.release(LlmConcurrencyLimiter.Outcome.IGNORED))
                         // map 4xx/5xx into textual SSE so the writer doesn't try to serialize a map
                         .onErrorResume(WebClientResponseException.class, e -> {
                             log.error("LLM call failed [{}]: {}", e.getStatusCode(), e.getResponseBodyAsString());
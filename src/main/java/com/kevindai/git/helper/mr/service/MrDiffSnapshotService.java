@@ -0,0 +1,57 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.entity.MrDiffSnapshotEntity;
+import com.kevindai.git.helper.entity.MrInfoEntity;
+import com.kevindai.git.helper.mr.dto.gitlab.MrDetail;
+import com.kevindai.git.helper.repository.MrDiffSnapshotRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Stores the {@link DiffSnapshot} of each analyzed sha so adopt can resolve anchors and position
+ * discussions with one primary-key read.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MrDiffSnapshotService {
+
+    private final MrDiffSnapshotRepository repository;
+
+    @Transactional
+    public void save(MrInfoEntity info, MrDetail.DiffRefs diffRefs, AddressableDiffBuilder.AnnotatedDiff annotated) {
+        if (diffRefs == null) {
+            log.warn("MR detail has no diff_refs, skip diff snapshot. mrInfoId={}", info.getId());
+            return;
+        }
+        DiffSnapshot.DiffRefs refs = new DiffSnapshot.DiffRefs(diffRefs.getBase_sha(), diffRefs.getStart_sha(), diffRefs.getHead_sha());
+        DiffSnapshot snapshot = DiffSnapshot.of(refs, annotated);
+        MrDiffSnapshotEntity e = new MrDiffSnapshotEntity();
+        e.setMrInfoId(info.getId());
+        e.setHeadSha(refs.headSha());
+        e.setAnchorCount(snapshot.index().size());
+        e.setPayload(snapshot.encode());
+        e.setCreatedAt(Instant.now());
+        repository.save(e);
+        log.debug("Diff snapshot saved. mrInfoId={}, anchors={}, bytes={}", info.getId(), e.getAnchorCount(), e.getPayload().length);
+    }
+
+    /**
+     * Snapshot of an analyzed sha; empty for analyses made before snapshots existed or unreadable ones.
+     */
+    public Optional<DiffSnapshot> find(long mrInfoId) {
+        return repository.findById(mrInfoId).flatMap(e -> {
+            try {
+                return Optional.of(DiffSnapshot.decode(e.getPayload()));
+            } catch (RuntimeException ex) {
+                log.warn("Unreadable diff snapshot for mrInfoId={}: {}", mrInfoId, ex.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
+}
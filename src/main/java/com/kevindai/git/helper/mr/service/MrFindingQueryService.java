@@ -0,0 +1,178 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.entity.MrAnalysisDetailEntity;
+import com.kevindai.git.helper.mr.dto.FindingQueryResponse;
+import com.kevindai.git.helper.mr.model.Severity;
+import com.kevindai.git.helper.repository.MrAnalysisDetailRepository;
+import jakarta.persistence.criteria.Predicate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Findings across projects and MRs, newest first, paged by keyset on {@code (created_at, id)}.
+ * <p>
+ * Each page continues strictly after the last row of the previous one, so a page costs the same at
+ * row 10 as at row 10 million and rows inserted meanwhile never shift pages. The cursor predicate
+ * is {@code created_at <= c and (created_at < c or id < i)}: the first conjunct gives PostgreSQL an
+ * index bound on {@code idx_mr_analysis_detail_created} / {@code idx_mr_analysis_detail_project_created},
+ * the rest breaks ties.
+ */
+@Service
+@RequiredArgsConstructor
+public class MrFindingQueryService {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1_000;
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    private final MrAnalysisDetailRepository detailRepository;
+
+    /**
+     * Filters; null or empty means "any". {@code file} is a glob ({@code *}, {@code ?}) over the
+     * whole path, {@code from} is inclusive and {@code to} exclusive.
+     */
+    public record Query(Collection<Long> projectIds,
+                        Collection<String> severities,
+                        Collection<String> categories,
+                        String file,
+                        Integer status,
+                        Instant from,
+                        Instant to,
+                        String cursor,
+                        Integer limit) {
+    }
+
+    record Cursor(Instant createdAt, long id) {
+    }
+
+    public FindingQueryResponse query(Query q) {
+        int limit = q.limit() == null ? DEFAULT_LIMIT : q.limit();
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        Cursor after = StringUtils.hasText(q.cursor()) ? decodeCursor(q.cursor()) : null;
+        // One extra row tells whether another page exists without a count query
+        List<MrAnalysisDetailEntity> rows = detailRepository.findBy(spec(q, after),
+                fq -> fq.sortBy(NEWEST_FIRST).limit(limit + 1).all());
+        boolean more = rows.size() > limit;
+        List<MrAnalysisDetailEntity> page = more ? rows.subList(0, limit) : rows;
+        String next = null;
+        if (more) {
+            MrAnalysisDetailEntity last = page.getLast();
+            next = encodeCursor(new Cursor(last.getCreatedAt(), last.getId()));
+        }
+        return FindingQueryResponse.builder()
+                .status("success")
+                .items(page.stream().map(MrFindingQueryService::toItem).toList())
+                .nextCursor(next)
+                .build();
+    }
+
+    private static Specification<MrAnalysisDetailEntity> spec(Query q, Cursor after) {
+        return (root, cq, cb) -> {
+            List<Predicate> where = new ArrayList<>();
+            if (q.projectIds() != null && !q.projectIds().isEmpty()) {
+                where.add(root.get("projectId").in(q.projectIds()));
+            }
+            if (q.severities() != null && !q.severities().isEmpty()) {
+                // Stored ranks cover spelling variants (critical, major, ...) that the raw column does not
+                where.add(root.get("severityRank").in(q.severities().stream().map(s -> Severity.from(s).rank()).distinct().toList()));
+            }
+            if (q.categories() != null && !q.categories().isEmpty()) {
+                where.add(root.get("category").in(q.categories()));
+            }
+            if (StringUtils.hasText(q.file())) {
+                where.add(cb.like(root.get("file"), globToLike(q.file()), '\\'));
+            }
+            if (q.status() != null) {
+                where.add(cb.equal(root.get("status"), q.status()));
+            }
+            if (q.from() != null) {
+                where.add(cb.greaterThanOrEqualTo(root.get("createdAt"), q.from()));
+            }
+            if (q.to() != null) {
+                where.add(cb.lessThan(root.get("createdAt"), q.to()));
+            }
+            if (after != null) {
+                where.add(cb.lessThanOrEqualTo(root.get("createdAt"), after.createdAt()));
+                where.add(cb.or(
+                        cb.lessThan(root.get("createdAt"), after.createdAt()),
+                        cb.lessThan(root.get("id"), after.id())));
+            }
+            return cb.and(where.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Glob to a SQL LIKE pattern with {@code \} as escape: {@code *} (and {@code **}) match any
+     * run of characters including {@code /}, {@code ?} one character. {@code **}{@code /} also matches
+     * no directory at all, so {@code src/**}{@code /*.java} matches {@code src/Foo.java}.
+     */
+    static String globToLike(String glob) {
+        StringBuilder like = new StringBuilder(glob.length() + 4);
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (glob.startsWith("**/", i)) {
+                        i += 2;
+                    }
+                    if (like.isEmpty() || like.charAt(like.length() - 1) != '%') {
+                        like.append('%');
+                    }
+                }
+                case '?' -> like.append('_');
+                case '%', '_', '\\' -> like.append('\\').append(c);
+                default -> like.append(c);
+            }
+        }
+        return like.toString();
+    }
+
+    static String encodeCursor(Cursor cursor) {
+        String raw = cursor.createdAt() + "|" + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new Cursor(Instant.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static FindingQueryResponse.Item toItem(MrAnalysisDetailEntity d) {
+        return FindingQueryResponse.Item.builder()
+                .id(d.getId())
+                .projectId(d.getProjectId())
+                .mrId(d.getMrId())
+                .mrInfoId(d.getMrInfoId())
+                .severity(d.getSeverity())
+                .category(d.getCategory())
+                .title(d.getTitle())
+                .description(d.getDescription())
+                .file(d.getFile())
+                .startLine(d.getStartLine())
+                .lineType(d.getLineType())
+                .anchorId(d.getAnchorId())
+                .confidence(d.getConfidence())
+                .status(d.getStatus())
+                .createdAt(d.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,245 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.entity.MrAnalysisDetailEntity;
+import com.kevindai.git.helper.entity.MrFileDigestEntity;
+import com.kevindai.git.helper.entity.MrInfoEntity;
+import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import com.kevindai.git.helper.mr.model.Severity;
+import com.kevindai.git.helper.mr.util.DiffLineCursor;
+import com.kevindai.git.helper.repository.MrFileDigestRepository;
+import com.kevindai.git.helper.repository.MrInfoEntityRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Supports incremental re-analysis when an MR gets a new head sha: files whose diff is unchanged
+ * since the previously analyzed sha keep their findings (anchors remapped to the new numbering)
+ * instead of going through the LLM again.
+ * <p>
+ * Diffs are compared by a hash that ignores hunk line numbers, so a rebase that only shifts a
+ * file's position in the target branch still counts as unchanged. Anchors are remapped by their
+ * offset from the first anchor of the file, which is stable when the diff lines are identical.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MrIncrementalService {
+
+    private static final int MAX_BASELINE_CANDIDATES = 5;
+
+    private final MrInfoEntityRepository mrInfoEntityRepository;
+    private final MrFileDigestRepository digestRepository;
+    private final MrAnalysisDetailService detailService;
+
+    public record FileDigest(String path, String oldPath, String hash, Integer firstAnchor, int anchorCount) {
+    }
+
+    /**
+     * Digests and findings of the most recent previously analyzed sha of the same MR.
+     */
+    public record Baseline(MrInfoEntity info,
+                           Map<String, MrFileDigestEntity> digests,
+                           Map<String, List<MrAnalysisDetailEntity>> detailsByFile) {
+
+        public static final Baseline EMPTY = new Baseline(null, Map.of(), Map.of());
+
+        public boolean isEmpty() {
+            return info == null;
+        }
+    }
+
+    public Baseline loadBaseline(MrInfoEntity target) {
+        List<MrInfoEntity> history = mrInfoEntityRepository.findByProjectIdAndMrIdOrderByIdDesc(target.getProjectId(), target.getMrId());
+        MrInfoEntity previous = history.stream()
+                .filter(i -> !Objects.equals(i.getId(), target.getId()))
+                .limit(MAX_BASELINE_CANDIDATES)
+                .filter(i -> digestRepository.existsByMrInfoId(i.getId()))
+                .findFirst()
+                .orElse(null);
+        if (previous == null) {
+            return Baseline.EMPTY;
+        }
+        Map<String, MrFileDigestEntity> digests = digestRepository.findByMrInfoId(previous.getId()).stream()
+                .collect(Collectors.toMap(MrFileDigestEntity::getFilePath, d -> d, (a, b) -> a));
+        Map<String, List<MrAnalysisDetailEntity>> byFile = detailService.loadDetails(previous.getId()).stream()
+                .filter(d -> StringUtils.hasText(d.getFile()))
+                .collect(Collectors.groupingBy(MrAnalysisDetailEntity::getFile));
+        log.info("Incremental baseline found. mrInfoId={}, baselineMrInfoId={}, baselineSha={}, files={}",
+                target.getId(), previous.getId(), previous.getSha(), digests.size());
+        return new Baseline(previous, digests, byFile);
+    }
+
+    /**
+     * Compute digests for every file, keyed by the path used in the annotated section header.
+     */
+    public Map<String, FileDigest> digest(AddressableDiffBuilder.AnnotatedDiff annotated) {
+        Map<String, FileDigest> digests = new LinkedHashMap<>();
+        for (AddressableDiffBuilder.FileSection section : annotated.getSections()) {
+            FileDigest d = digest(section);
+            if (d != null) {
+                digests.put(d.path(), d);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Digest of one annotated file, or {@code null} when the section has no path.
+     */
+    public FileDigest digest(AddressableDiffBuilder.FileSection section) {
+        if (!StringUtils.hasText(section.path())) {
+            return null;
+        }
+        return new FileDigest(section.path(), section.diff().getOld_path(), hash(section.diff()),
+                section.firstAnchor(), section.anchorCount());
+    }
+
+    /**
+     * Whether the file's diff is identical to the baseline one, so its findings can be carried over.
+     */
+    public boolean isUnchanged(Baseline baseline, FileDigest current) {
+        if (baseline.isEmpty()) {
+            return false;
+        }
+        MrFileDigestEntity previous = baseline.digests().get(current.path());
+        return previous != null
+                && previous.getDiffHash().equals(current.hash())
+                && previous.getAnchorCount() == current.anchorCount();
+    }
+
+    /**
+     * Findings to carry over for an unchanged file, re-targeted at {@code target} with anchors
+     * remapped through {@code index}. Returns {@code null} when the file must be re-analyzed.
+     */
+    public List<MrAnalysisDetailEntity> carryOver(Baseline baseline,
+                                                  FileDigest current,
+                                                  MrInfoEntity target,
+                                                  AnchorIndex index) {
+        if (!isUnchanged(baseline, current)) {
+            return null;
+        }
+        MrFileDigestEntity previous = baseline.digests().get(current.path());
+        Map<Long, MrAnalysisDetailEntity> oldDetails = new LinkedHashMap<>();
+        for (String file : new LinkedHashSet<>(Arrays.asList(current.path(), current.oldPath()))) {
+            if (file == null) {
+                continue;
+            }
+            baseline.detailsByFile().getOrDefault(file, List.of()).forEach(d -> oldDetails.putIfAbsent(d.getId(), d));
+        }
+        Instant now = Instant.now();
+        List<MrAnalysisDetailEntity> carried = new ArrayList<>();
+        for (MrAnalysisDetailEntity old : oldDetails.values()) {
+            MrAnalysisDetailEntity e = copyFor(old, target, now);
+            remapAnchor(e, previous.getFirstAnchor(), current.firstAnchor(), index);
+            carried.add(e);
+        }
+        return carried;
+    }
+
+    @Transactional
+    public void saveDigests(MrInfoEntity target, Collection<FileDigest> digests) {
+        Instant now = Instant.now();
+        List<MrFileDigestEntity> rows = new ArrayList<>(digests.size());
+        for (FileDigest d : digests) {
+            MrFileDigestEntity e = new MrFileDigestEntity();
+            e.setMrInfoId(target.getId());
+            e.setFilePath(d.path());
+            e.setDiffHash(d.hash());
+            e.setFirstAnchor(d.firstAnchor());
+            e.setAnchorCount(d.anchorCount());
+            e.setCreatedAt(now);
+            rows.add(e);
+        }
+        digestRepository.saveAll(rows);
+    }
+
+    private static void remapAnchor(MrAnalysisDetailEntity e,
+                                    Integer previousFirst,
+                                    Integer currentFirst,
+                                    AnchorIndex index) {
+        if (e.getAnchorId() == null || previousFirst == null || currentFirst == null) {
+            return;
+        }
+        int n = AnchorIndex.parseNumber(e.getAnchorId());
+        if (n < 0) {
+            return;
+        }
+        AnchorIndex.Anchor anchor = index.get(currentFirst + (n - previousFirst));
+        if (anchor == null) {
+            return;
+        }
+        e.setAnchorId(anchor.id());
+        e.setFile(anchor.path());
+        e.setLineType(anchor.lineType());
+        e.setStartLine(anchor.line());
+    }
+
+    private static MrAnalysisDetailEntity copyFor(MrAnalysisDetailEntity old, MrInfoEntity target, Instant now) {
+        MrAnalysisDetailEntity e = new MrAnalysisDetailEntity();
+        e.setMrInfoId(target.getId());
+        e.setProjectId(target.getProjectId());
+        e.setMrId(target.getMrId());
+        e.setSeverity(old.getSeverity());
+        e.setSeverityRank(Severity.from(old.getSeverity()).rank());
+        e.setCategory(old.getCategory());
+        e.setTitle(old.getTitle());
+        e.setDescription(old.getDescription());
+        e.setFile(old.getFile());
+        e.setLineType(old.getLineType());
+        e.setStartLine(old.getStartLine());
+        e.setEvidence(old.getEvidence());
+        e.setRemediationSteps(old.getRemediationSteps());
+        e.setConfidence(old.getConfidence());
+        e.setTagsJson(old.getTagsJson());
+        e.setAnchorId(old.getAnchorId());
+        e.setAnchorSide(old.getAnchorSide());
+        e.setStatus(old.getStatus()); // keep adopted state across pushes
+        e.setCreatedAt(now);
+        e.setUpdatedAt(now);
+        return e;
+    }
+
+    /**
+     * SHA-256 over file identity and the diff text with hunk ranges removed
+     * ({@code @@ -a,b +c,d @@ ctx} becomes {@code @@ ctx}).
+     */
+    static String hash(MrDiff d) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String identity = d.getOld_path() + '\0' + d.getNew_path() + '\0' + d.isNew_file() + d.isDeleted_file() + d.isRenamed_file() + '\0';
+        md.update(identity.getBytes(StandardCharsets.UTF_8));
+        String diff = d.getDiff();
+        if (diff != null) {
+            StringBuilder normalized = new StringBuilder(diff.length());
+            DiffLineCursor line = new DiffLineCursor(diff);
+            while (line.next()) {
+                if (line.startsWith("@@")) {
+                    int close = diff.indexOf("@@", line.lineStart() + 2);
+                    normalized.append("@@");
+                    if (close >= 0 && close < line.lineEnd()) {
+                        normalized.append(diff, close + 2, line.lineEnd());
+                    }
+                } else {
+                    line.appendLine(normalized);
+                }
+                normalized.append('\n');
+            }
+            md.update(normalized.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+}
@@ -0,0 +1,172 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.mr.dto.llm.Finding;
+import com.kevindai.git.helper.mr.dto.llm.LlmAnalysisReport;
+import com.kevindai.git.helper.utils.JsonUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Incremental parser for an {@link LlmAnalysisReport} arriving as streamed text chunks.
+ * <p>
+ * A small state machine follows the JSON structure (strings, escapes, nesting) and captures each
+ * element of the top-level {@code findings} array; the element is parsed and handed to the consumer
+ * as soon as its closing brace arrives. Text before the document (a {@code ```json} fence, chatter) is
+ * skipped. {@link #finish()} parses the whole document when it is valid and otherwise falls back to
+ * the findings that parsed, so a truncated or malformed tail loses only the finding it cut off.
+ * Not thread-safe; feed chunks in order.
+ */
+@Slf4j
+final class StreamingReportParser {
+
+    private final Consumer<Finding> onFinding;
+    private final StringBuilder document = new StringBuilder();
+    private final List<Finding> findings = new ArrayList<>();
+    private final StringBuilder element = new StringBuilder();
+    private final StringBuilder key = new StringBuilder();
+
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private String lastKey;
+    private String pendingKey;
+    private int findingsDepth = -1; // depth inside the findings array, -1 when outside
+    private boolean capturing;
+    private int malformed;
+
+    /**
+     * Outcome of a stream: {@code complete} when the whole document parsed.
+     */
+    record Result(LlmAnalysisReport report, boolean complete, int malformed) {
+    }
+
+    StreamingReportParser(Consumer<Finding> onFinding) {
+        this.onFinding = onFinding;
+    }
+
+    void feed(String chunk) {
+        if (chunk == null) {
+            return;
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    int findingCount() {
+        return findings.size();
+    }
+
+    /**
+     * Report for the text seen so far. Throws when neither the document nor any finding parsed.
+     */
+    Result finish() {
+        int start = document.indexOf("{");
+        int end = document.lastIndexOf("}");
+        if (start >= 0 && end > start && depth == 0) {
+            try {
+                LlmAnalysisReport report = JsonUtils.parseObject(document.substring(start, end + 1), LlmAnalysisReport.class);
+                if (report != null) {
+                    return new Result(report, true, malformed);
+                }
+            } catch (Exception e) {
+                log.warn("Streamed LLM report is not valid JSON, keeping {} parsed findings: {}", findings.size(), e.getMessage());
+            }
+        }
+        if (findings.isEmpty()) {
+            throw new IllegalStateException("LLM response contained no parsable report (" + document.length() + " chars)");
+        }
+        var report = new LlmAnalysisReport();
+        report.setSchemaVersion("1.0");
+        report.setFindings(List.copyOf(findings));
+        return new Result(report, false, malformed);
+    }
+
+    private void accept(char c) {
+        if (depth > 0 || c == '{') {
+            document.append(c);
+        }
+        if (capturing) {
+            element.append(c);
+        }
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (depth == 1) {
+                    pendingKey = key.toString();
+                }
+            } else if (depth == 1) {
+                key.append(c);
+            }
+            return;
+        }
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                if (depth == 1) {
+                    key.setLength(0);
+                }
+            }
+            case ':' -> {
+                if (depth == 1) {
+                    lastKey = pendingKey;
+                }
+            }
+            case ',' -> {
+                if (depth == 1) {
+                    lastKey = null;
+                }
+            }
+            case '{', '[' -> {
+                if (depth == 0 && c == '[') {
+                    return; // stray bracket before the document
+                }
+                depth++;
+                if (c == '[' && depth == 2 && "findings".equals(lastKey)) {
+                    findingsDepth = depth;
+                } else if (c == '{' && depth == findingsDepth + 1 && findingsDepth > 0) {
+                    capturing = true;
+                    element.setLength(0);
+                    element.append(c);
+                }
+            }
+            case '}', ']' -> {
+                if (depth == 0) {
+                    return;
+                }
+                if (c == '}' && capturing && depth == findingsDepth + 1) {
+                    capturing = false;
+                    emit(element.toString());
+                } else if (c == ']' && depth == findingsDepth) {
+                    findingsDepth = -1;
+                }
+                depth--;
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void emit(String json) {
+        Finding finding;
+        try {
+            finding = JsonUtils.parseObject(json, Finding.class);
+        } catch (Exception e) {
+            malformed++;
+            log.warn("Skipping malformed finding in streamed LLM report: {}", e.getMessage());
+            return;
+        }
+        if (finding == null) {
+            return;
+        }
+        findings.add(finding);
+        onFinding.accept(finding);
+    }
+}
@@ -0,0 +1,170 @@
+package com.kevindai.git.helper.mr.util;
+
+/**
+ * Forward-only cursor over the lines of a unified diff.
+ * <p>
+ * Lines are exposed as offsets into the underlying text and hunk headers are parsed in place, so
+ * walking a diff allocates nothing per line. Callers copy line content out with
+ * {@link #appendLine(StringBuilder)} / {@link #appendBody(StringBuilder)} only where they need it.
+ * <pre>
+ * DiffLineCursor c = new DiffLineCursor(diff);
+ * while (c.next()) {
+ *     if (c.isHunkHeader()) ...      // c.hunkOldStart(), c.hunkNewStart()
+ *     else if (c.isAddition()) ...
+ * }
+ * </pre>
+ */
+public final class DiffLineCursor {
+
+    private final CharSequence text;
+    private final int length;
+    private int pos;
+    private int lineStart;
+    private int lineEnd;
+    private boolean hunkHeader;
+    private boolean inHunk;
+    private int hunkOldStart;
+    private int hunkNewStart;
+
+    public DiffLineCursor(CharSequence text) {
+        this.text = text == null ? "" : text;
+        this.length = this.text.length();
+    }
+
+    /**
+     * Added/removed line counts of one diff.
+     */
+    public record LineStats(int added, int removed) {
+
+        public static final LineStats EMPTY = new LineStats(0, 0);
+
+        public static LineStats of(CharSequence diff) {
+            if (diff == null || diff.isEmpty()) return EMPTY;
+            int added = 0, removed = 0;
+            DiffLineCursor c = new DiffLineCursor(diff);
+            while (c.next()) {
+                if (c.isAddition()) added++;
+                else if (c.isRemoval()) removed++;
+            }
+            return new LineStats(added, removed);
+        }
+    }
+
+    /**
+     * Advance to the next line. A trailing newline does not start an extra empty line.
+     */
+    public boolean next() {
+        if (pos >= length) return false;
+        lineStart = pos;
+        int end = pos;
+        while (end < length && text.charAt(end) != '\n') end++;
+        lineEnd = end;
+        pos = end < length ? end + 1 : length;
+        hunkHeader = startsWith("@@");
+        if (hunkHeader) {
+            inHunk = parseHunkHeader();
+        }
+        return true;
+    }
+
+    public CharSequence text() { return text; }
+    public int lineStart() { return lineStart; }
+    public int lineEnd() { return lineEnd; }
+    public int lineLength() { return lineEnd - lineStart; }
+    public boolean isEmpty() { return lineEnd == lineStart; }
+
+    /**
+     * First character of the line ({@code ' '}, {@code '+'}, {@code '-'}, ...), or {@code 0} when empty.
+     */
+    public char tag() {
+        return isEmpty() ? 0 : text.charAt(lineStart);
+    }
+
+    public boolean isHunkHeader() { return hunkHeader; }
+
+    /**
+     * Whether the current line is a well-formed {@code @@ -a,b +c,d @@} header or follows one.
+     */
+    public boolean inHunk() { return inHunk; }
+
+    public int hunkOldStart() { return hunkOldStart; }
+    public int hunkNewStart() { return hunkNewStart; }
+
+    /**
+     * An added line. Outside hunks {@code +++} file headers are not counted.
+     */
+    public boolean isAddition() {
+        return !hunkHeader && tag() == '+' && (inHunk || !startsWith("+++"));
+    }
+
+    /**
+     * A removed line. Outside hunks {@code ---} file headers are not counted.
+     */
+    public boolean isRemoval() {
+        return !hunkHeader && tag() == '-' && (inHunk || !startsWith("---"));
+    }
+
+    public boolean startsWith(String prefix) {
+        int n = prefix.length();
+        if (lineEnd - lineStart < n) return false;
+        for (int i = 0; i < n; i++) {
+            if (text.charAt(lineStart + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Append the whole line, without its newline.
+     */
+    public StringBuilder appendLine(StringBuilder out) {
+        return out.append(text, lineStart, lineEnd);
+    }
+
+    /**
+     * Append the line without its tag character and newline.
+     */
+    public StringBuilder appendBody(StringBuilder out) {
+        return isEmpty() ? out : out.append(text, lineStart + 1, lineEnd);
+    }
+
+    /**
+     * Parse {@code @@ -a[,b] +c[,d] @@}; a missing or malformed start number defaults to 1.
+     * Returns false when the closing {@code @@} or the {@code +} range is missing.
+     */
+    private boolean parseHunkHeader() {
+        int close = indexOf("@@", lineStart + 2);
+        int plus = indexOf("+", lineStart + 2);
+        if (plus < 0 || close < 0 || close < plus) {
+            return false;
+        }
+        int minus = indexOf("-", lineStart + 2);
+        hunkOldStart = minus >= 0 && minus < plus ? parseStart(minus + 1, plus) : 1;
+        hunkNewStart = parseStart(plus + 1, close);
+        return true;
+    }
+
+    private int parseStart(int from, int to) {
+        int i = from;
+        while (i < to && text.charAt(i) == ' ') i++;
+        int value = 0;
+        int digits = 0;
+        while (i < to && Character.isDigit(text.charAt(i)) && digits < 10) {
+            value = value * 10 + (text.charAt(i) - '0');
+            i++;
+            digits++;
+        }
+        return digits == 0 ? 1 : value;
+    }
+
+    private int indexOf(String s, int from) {
+        int last = lineEnd - s.length();
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < s.length(); j++) {
+                if (text.charAt(i + j) != s.charAt(j)) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
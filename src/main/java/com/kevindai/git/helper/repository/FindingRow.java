@@ -0,0 +1,29 @@
+package com.kevindai.git.helper.repository;
+
+import com.kevindai.git.helper.entity.MrAnalysisDetailEntity;
+
+/**
+ * Columns of mr_analysis_detail needed to render a finding in a report (no MR keys or timestamps).
+ */
+public record FindingRow(Long id,
+                         String severity,
+                         String category,
+                         String title,
+                         String description,
+                         String file,
+                         String lineType,
+                         Integer startLine,
+                         String evidence,
+                         String remediationSteps,
+                         Double confidence,
+                         String tagsJson,
+                         String anchorId,
+                         String anchorSide,
+                         Integer status) {
+
+    public static FindingRow of(MrAnalysisDetailEntity d) {
+        return new FindingRow(d.getId(), d.getSeverity(), d.getCategory(), d.getTitle(), d.getDescription(),
+                d.getFile(), d.getLineType(), d.getStartLine(), d.getEvidence(), d.getRemediationSteps(),
+                d.getConfidence(), d.getTagsJson(), d.getAnchorId(), d.getAnchorSide(), d.getStatus());
+    }
+}
@@ -2,6 +2,7 @@ package com.kevindai.git.helper.repository;
 
 import com.kevindai.git.helper.entity.GitTokenEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.Collection;
 import java.util.List;
@@ -13,5 +14,11 @@ public interface GitTokenRepository extends JpaRepository<GitTokenEntity, Long>
     Optional<GitTokenEntity> findByGroupPath(String groupPath);
 
     List<GitTokenEntity> findByGroupPathIn(Collection<String> groupPaths);
-}
 
+    /**
+     * Cheap fingerprint of the table; changes on insert, delete and updates that bump updated_at.
+     */
+    @Query("select new com.kevindai.git.helper.repository.GitTokenTableVersion(" +
+            "count(t), max(t.updatedAt), coalesce(sum(t.id), 0L)) from GitTokenEntity t")
+    GitTokenTableVersion tableVersion();
+}
@@ -0,0 +1,9 @@
+package com.kevindai.git.helper.repository;
+
+import java.time.Instant;
+
+/**
+ * Fingerprint of the git_token table: row count, latest updated_at and sum of ids.
+ */
+public record GitTokenTableVersion(Long rowCount, Instant lastUpdated, Long idSum) {
+}
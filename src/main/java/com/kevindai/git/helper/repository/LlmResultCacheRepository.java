@@ -0,0 +1,26 @@
+package com.kevindai.git.helper.repository;
+
+import com.kevindai.git.helper.entity.LlmResultCacheEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface LlmResultCacheRepository extends JpaRepository<LlmResultCacheEntity, String> {
+
+    @Modifying
+    @Query("update LlmResultCacheEntity c set c.hitCount = c.hitCount + :hits, c.lastHitAt = :now where c.cacheKey = :key")
+    int touch(@Param("key") String key, @Param("hits") long hits, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from LlmResultCacheEntity c where c.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") Instant cutoff);
+
+    // Keep only the most recently used :keep entries
+    @Modifying
+    @Query(value = "delete from llm_result_cache where cache_key in (" +
+            "select cache_key from llm_result_cache order by last_hit_at desc offset :keep)", nativeQuery = true)
+    int deleteLeastRecentlyUsedBeyond(@Param("keep") int keep);
+}
@@ -2,16 +2,33 @@ package com.kevindai.git.helper.repository;
 
 import com.kevindai.git.helper.entity.MrAnalysisDetailEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
-public interface MrAnalysisDetailRepository extends JpaRepository<MrAnalysisDetailEntity, Long> {
-    void deleteByMrInfoId(Long mrInfoId);
+public interface MrAnalysisDetailRepository extends JpaRepository<MrAnalysisDetailEntity, Long>,
+        JpaSpecificationExecutor<MrAnalysisDetailEntity> {
+    @Modifying
+    @Query("delete from MrAnalysisDetailEntity d where d.mrInfoId = :mrInfoId")
+    int deleteByMrInfoId(@Param("mrInfoId") Long mrInfoId);
     List<MrAnalysisDetailEntity> findByMrInfoId(Long mrInfoId);
 
-    @Query("select d from MrAnalysisDetailEntity d where d.mrInfoId = :mrInfoId order by " +
-            "case lower(d.severity) when 'blocker' then 0 when 'high' then 1 when 'medium' then 2 when 'low' then 3 when 'info' then 4 else 98 end asc, d.id asc")
+    // Served in order by idx_mr_analysis_detail_info_rank (mr_info_id, severity_rank, id)
+    @Query("select d from MrAnalysisDetailEntity d where d.mrInfoId = :mrInfoId order by d.severityRank asc, d.id asc")
     List<MrAnalysisDetailEntity> findByMrInfoIdOrderBySeverity(@Param("mrInfoId") Long mrInfoId);
+
+    @Query("select new com.kevindai.git.helper.repository.FindingRow(" +
+            "d.id, d.severity, d.category, d.title, d.description, d.file, d.lineType, d.startLine, d.evidence, " +
+            "d.remediationSteps, d.confidence, d.tagsJson, d.anchorId, d.anchorSide, d.status) " +
+            "from MrAnalysisDetailEntity d where d.mrInfoId = :mrInfoId order by d.severityRank asc, d.id asc")
+    List<FindingRow> findRowsByMrInfoIdOrderBySeverity(@Param("mrInfoId") Long mrInfoId);
+
+    @Modifying
+    @Query("update MrAnalysisDetailEntity d set d.status = :status, d.updatedAt = :now where d.id in :ids")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") int status, @Param("now") Instant now);
 }
@@ -0,0 +1,32 @@
+package com.kevindai.git.helper.repository;
+
+import com.kevindai.git.helper.entity.MrAnalysisLeaseEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface MrAnalysisLeaseRepository extends JpaRepository<MrAnalysisLeaseEntity, MrAnalysisLeaseEntity.Key> {
+
+    // Insert the lease, or take it over when the current holder let it expire; 1 when acquired.
+    // Expiry uses the database clock so nodes with skewed clocks agree.
+    @Modifying
+    @Query(value = "insert into mr_analysis_lease (project_id, mr_id, sha, owner, expires_at, created_at) " +
+            "values (:projectId, :mrId, :sha, :owner, now() + make_interval(secs => :ttlSeconds), now()) " +
+            "on conflict (project_id, mr_id, sha) do update " +
+            "set owner = excluded.owner, expires_at = excluded.expires_at, created_at = excluded.created_at " +
+            "where mr_analysis_lease.expires_at < now()", nativeQuery = true)
+    int tryAcquire(@Param("projectId") long projectId, @Param("mrId") long mrId, @Param("sha") String sha,
+                   @Param("owner") String owner, @Param("ttlSeconds") double ttlSeconds);
+
+    @Modifying
+    @Query(value = "update mr_analysis_lease set expires_at = now() + make_interval(secs => :ttlSeconds) " +
+            "where project_id = :projectId and mr_id = :mrId and sha = :sha and owner = :owner", nativeQuery = true)
+    int renew(@Param("projectId") long projectId, @Param("mrId") long mrId, @Param("sha") String sha,
+              @Param("owner") String owner, @Param("ttlSeconds") double ttlSeconds);
+
+    @Modifying
+    @Query("delete from MrAnalysisLeaseEntity l where l.projectId = :projectId and l.mrId = :mrId and l.sha = :sha and l.owner = :owner")
+    int release(@Param("projectId") long projectId, @Param("mrId") long mrId, @Param("sha") String sha,
+                @Param("owner") String owner);
+}
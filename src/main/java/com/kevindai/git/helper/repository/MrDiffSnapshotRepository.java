@@ -0,0 +1,7 @@
+package com.kevindai.git.helper.repository;
+
+import com.kevindai.git.helper.entity.MrDiffSnapshotEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface MrDiffSnapshotRepository extends JpaRepository<MrDiffSnapshotEntity, Long> {
+}
@@ -0,0 +1,12 @@
+package com.kevindai.git.helper.repository;
+
+import com.kevindai.git.helper.entity.MrFileDigestEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface MrFileDigestRepository extends JpaRepository<MrFileDigestEntity, Long> {
+    List<MrFileDigestEntity> findByMrInfoId(Long mrInfoId);
+
+    boolean existsByMrInfoId(Long mrInfoId);
+}
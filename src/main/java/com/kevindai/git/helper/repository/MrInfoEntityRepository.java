@@ -3,6 +3,7 @@ package com.kevindai.git.helper.repository;
 import com.kevindai.git.helper.entity.MrInfoEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface MrInfoEntityRepository extends JpaRepository<MrInfoEntity, Long> {
@@ -13,4 +14,7 @@ public interface MrInfoEntityRepository extends JpaRepository<MrInfoEntity, Long
     Optional<MrInfoEntity> findByProjectIdAndMrIdAndSha(Long projectId, Long mrId, String sha);
 
     Optional<MrInfoEntity> findByProjectIdAndMrId(Long projectId, Long mrId);
+
+    // History of analyzed shas for one MR, newest first
+    List<MrInfoEntity> findByProjectIdAndMrIdOrderByIdDesc(Long projectId, Long mrId);
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnchorIndexTest {
+
+    @Test
+    void resolvesAnchorsByNumber() {
+        MrDiff d = new MrDiff();
+        d.setNew_path("src/New.java");
+        d.setOld_path("src/Old.java");
+        d.setDiff("@@ -10,2 +20,2 @@\n ctx\n-gone\n+added\n");
+        AnchorIndex index = new AddressableDiffBuilder().buildAnnotatedWithIndex(List.of(d)).getIndex();
+
+        assertEquals(3, index.size());
+        var ctx = index.get("A#1");
+        assertEquals('N', ctx.side());
+        assertEquals(20, ctx.newLine());
+        assertEquals(10, ctx.oldLine());
+        var removed = index.get("A#2");
+        assertEquals("src/Old.java", removed.path());
+        assertEquals("old_line", removed.lineType());
+        assertEquals(11, removed.line());
+        assertNull(removed.newLine());
+        var added = index.get(3);
+        assertEquals("src/New.java", added.path());
+        assertEquals(21, added.line());
+        assertEquals("A#3", added.id());
+
+        assertNull(index.get("A#0"));
+        assertNull(index.get("A#4"));
+        assertNull(index.get("B#1"));
+        assertNull(index.get("A#1x"));
+        assertNull(index.get((String) null));
+    }
+
+    @Test
+    void isMuchSmallerThanMapForm() {
+        List<MrDiff> diffs = new ArrayList<>();
+        for (int f = 0; f < 50; f++) {
+            StringBuilder sb = new StringBuilder("@@ -1,1000 +1,1000 @@\n");
+            for (int i = 0; i < 1000; i++) sb.append(i % 3 == 0 ? "+" : " ").append("line ").append(i).append('\n');
+            MrDiff d = new MrDiff();
+            d.setNew_path("src/File" + f + ".java");
+            d.setOld_path(d.getNew_path());
+            d.setDiff(sb.toString());
+            diffs.add(d);
+        }
+        AnchorIndex index = new AddressableDiffBuilder().buildAnnotatedWithIndex(diffs).getIndex();
+        assertEquals(50_000, index.size());
+        assertTrue(index.footprintBytes() * 5 < index.mapFootprintBytes(),
+                () -> "compact=" + index.footprintBytes() + " map=" + index.mapFootprintBytes());
+    }
+
+    @Test
+    void legacyNumberingSortsByPath() {
+        MrDiff b = new MrDiff();
+        b.setNew_path("src/B.java");
+        b.setDiff("@@ -1,1 +1,1 @@\n+b\n");
+        MrDiff a = new MrDiff();
+        a.setNew_path("src/A.java");
+        a.setDiff("@@ -1,1 +1,1 @@\n+a\n");
+        var builder = new AddressableDiffBuilder();
+
+        assertEquals("src/B.java", builder.buildAnnotatedWithIndex(List.of(b, a)).getIndex().get(1).path());
+        assertEquals("src/A.java", builder.buildLegacyAnnotatedWithIndex(List.of(b, a)).getIndex().get(1).path());
+    }
+}
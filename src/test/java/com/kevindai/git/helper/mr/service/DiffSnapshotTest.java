@@ -0,0 +1,43 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffSnapshotTest {
+
+    private static MrDiff diff(String oldPath, String newPath, boolean newFile, boolean deleted, String body) {
+        MrDiff d = new MrDiff();
+        d.setOld_path(oldPath);
+        d.setNew_path(newPath);
+        d.setNew_file(newFile);
+        d.setDeleted_file(deleted);
+        d.setDiff(body);
+        return d;
+    }
+
+    @Test
+    void roundTripsRefsFilesAndAnchors() {
+        var annotated = new AddressableDiffBuilder().buildAnnotatedWithIndex(List.of(
+                diff("src/A.java", "src/A.java", false, false, "@@ -3,2 +3,2 @@\n ctx\n-old\n+new\n"),
+                diff("src/Gone.java", "src/Gone.java", false, true, "@@ -1,1 +0,0 @@\n-bye\n"),
+                diff(null, "img.png", true, false, null)));
+        var refs = new DiffSnapshot.DiffRefs("base", null, "head");
+        DiffSnapshot decoded = DiffSnapshot.decode(DiffSnapshot.of(refs, annotated).encode());
+
+        assertEquals(refs, decoded.refs());
+        assertFalse(decoded.refs().isComplete());
+        assertEquals(4, decoded.index().size());
+        var removed = decoded.index().get("A#2");
+        assertEquals("src/A.java", removed.path());
+        assertEquals(4, removed.line());
+        assertEquals(4, decoded.index().get("A#3").line());
+        assertEquals("src/Gone.java", decoded.index().get("A#4").path());
+        assertTrue(decoded.file("src/Gone.java").deletedFile());
+        assertTrue(decoded.file("img.png").newFile());
+        assertNull(decoded.file("other"));
+    }
+}
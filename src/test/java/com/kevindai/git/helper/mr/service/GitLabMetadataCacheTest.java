@@ -0,0 +1,56 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GitLabMetadataCacheTest {
+
+    private final GitLabMetadataCache cache = new GitLabMetadataCache(new MrAnalysisProperties(), new SimpleMeterRegistry());
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Long> first = CompletableFuture.supplyAsync(() -> cache.projectId("g/p", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return 42L;
+        }));
+        while (loads.get() == 0) {
+            Thread.onSpinWait();
+        }
+        CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> cache.projectId("g/p", () -> {
+            loads.incrementAndGet();
+            return 7L;
+        }));
+        release.countDown();
+        assertEquals(42L, first.get(5, TimeUnit.SECONDS));
+        assertEquals(42L, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void failedLoadsAreNotCached() {
+        assertThrows(IllegalStateException.class, () -> cache.projectId("g/q", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(3L, cache.projectId("g/q", () -> 3L));
+        assertEquals(3L, cache.projectId("g/q", () -> 4L));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.kevindai.git.helper.mr.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GitLabRequestContextTest {
+
+    private final GitLabRequestContext context = new GitLabRequestContext();
+
+    @Test
+    void scopeIsRestoredAfterCall() {
+        var outer = new GitLabRequestContext.Scope("g1", "t1");
+        var inner = new GitLabRequestContext.Scope("g2", "t2");
+        context.runWith(outer, () -> {
+            assertEquals("t2", context.callWith(inner, context::getToken));
+            assertEquals("t1", context.getToken());
+        });
+        assertNull(context.current());
+    }
+
+    @Test
+    void pooledThreadSeesSubmittersScopeOnly() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // Warm the single pool thread under tenant A
+            context.callWith(new GitLabRequestContext.Scope("a", "token-a"),
+                    () -> CompletableFuture.runAsync(context.wrap(() -> { }), pool)).get();
+
+            String seenByB = context.callWith(new GitLabRequestContext.Scope("b", "token-b"), () -> {
+                var result = new CompletableFuture<String>();
+                pool.execute(context.wrap(() -> result.complete(context.getToken())));
+                return result;
+            }).get();
+            assertEquals("token-b", seenByB);
+
+            var unscoped = new CompletableFuture<String>();
+            pool.execute(context.wrap(() -> unscoped.complete(String.valueOf(context.getToken()))));
+            assertEquals("null", unscoped.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
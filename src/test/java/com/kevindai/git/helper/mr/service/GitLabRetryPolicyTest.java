@@ -0,0 +1,82 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GitLabRetryPolicyTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private final MrAnalysisProperties properties = new MrAnalysisProperties();
+    private final GitLabRetryPolicy policy = new GitLabRetryPolicy(properties, new SimpleMeterRegistry(),
+            Clock.fixed(NOW, ZoneOffset.UTC), () -> 1.0);
+
+    @Test
+    void backoffDoublesUpToTheCap() {
+        assertEquals(Duration.ofMillis(500), policy.backoff(1));
+        assertEquals(Duration.ofMillis(1000), policy.backoff(2));
+        assertEquals(Duration.ofSeconds(30), policy.backoff(12));
+        assertEquals(Duration.ofSeconds(30), policy.backoff(40));
+    }
+
+    @Test
+    void honorsRetryAfterAndPausesTheTokenOn429() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "7");
+        Duration delay = policy.retryDelay(HttpMethod.POST, "t1", HttpStatus.TOO_MANY_REQUESTS, headers, 1);
+        assertEquals(Duration.ofMillis(7500), delay);
+        assertEquals(Duration.ofSeconds(7), policy.remainingPause("t1"));
+        // Other tokens have their own GitLab budget and keep going
+        assertEquals(Duration.ZERO, policy.remainingPause("t2"));
+        assertEquals(Duration.ZERO, policy.remainingPause(null));
+
+        headers.set(HttpHeaders.RETRY_AFTER, "Wed, 01 Jan 2025 00:00:03 GMT");
+        assertEquals(Duration.ofSeconds(3), policy.retryAfter(headers));
+        headers.set(HttpHeaders.RETRY_AFTER, "600");
+        assertNull(policy.retryDelay(HttpMethod.GET, "t1", HttpStatus.TOO_MANY_REQUESTS, headers, 1));
+    }
+
+    @Test
+    void retriesReadsOnGatewayErrorsButNotWrites() {
+        HttpHeaders none = new HttpHeaders();
+        assertNotNull(policy.retryDelay(HttpMethod.GET, "t", HttpStatus.BAD_GATEWAY, none, 1));
+        assertNull(policy.retryDelay(HttpMethod.POST, "t", HttpStatus.BAD_GATEWAY, none, 1));
+        assertNull(policy.retryDelay(HttpMethod.GET, "t", HttpStatus.NOT_FOUND, none, 1));
+        assertNull(policy.retryDelay(HttpMethod.GET, "t", HttpStatus.SERVICE_UNAVAILABLE, none, 4));
+        assertNotNull(policy.retryDelay(HttpMethod.GET, "t", new IOException("reset"), 1));
+        assertNull(policy.retryDelay(HttpMethod.POST, "t", new IOException("reset"), 1));
+    }
+
+    @Test
+    void exhaustedRateLimitPausesUntilReset() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("RateLimit-Remaining", "0");
+        headers.set("RateLimit-Reset", String.valueOf(NOW.getEpochSecond() + 5));
+        assertNull(policy.retryDelay(HttpMethod.GET, "t1", HttpStatus.OK, headers, 1));
+        assertEquals(Duration.ofSeconds(5), policy.remainingPause("t1"));
+        assertEquals(Duration.ZERO, policy.remainingPause("t2"));
+    }
+
+    @Test
+    void classifiesOperations() {
+        assertEquals(GitLabRetryPolicy.Operation.DIFF,
+                policy.classify(HttpMethod.GET, URI.create("http://g/api/v4/projects/1/merge_requests/2/diffs?page=1")));
+        assertEquals(GitLabRetryPolicy.Operation.METADATA,
+                policy.classify(HttpMethod.GET, URI.create("http://g/api/v4/projects/1/merge_requests/2")));
+        assertEquals(GitLabRetryPolicy.Operation.WRITE,
+                policy.classify(HttpMethod.POST, URI.create("http://g/api/v4/projects/1/merge_requests/2/discussions")));
+    }
+}
@@ -0,0 +1,56 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kevindai.git.helper.config.GitConfig;
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class GitLabServiceDiffsTest {
+
+    @Test
+    void followsNextPageAndStreamsEveryFile() {
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        GitConfig gitConfig = new GitConfig();
+        gitConfig.setUrl("http://gitlab/api/v4");
+        MrAnalysisProperties properties = new MrAnalysisProperties();
+        properties.getDiffs().setPerPage(2);
+        GitLabService service = new GitLabService(gitConfig, builder.build(), null,
+                new GitLabMetadataCache(properties, new SimpleMeterRegistry()), properties,
+                new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+
+        HttpHeaders more = new HttpHeaders();
+        more.add("X-Next-Page", "2");
+        HttpHeaders last = new HttpHeaders();
+        last.add("X-Next-Page", "");
+        server.expect(requestTo("http://gitlab/api/v4/projects/7/merge_requests/3/diffs?page=1&per_page=2"))
+                .andRespond(withSuccess("[{\"new_path\":\"a\",\"diff\":\"+x\\n\",\"extra\":1},{\"new_path\":\"b\"}]",
+                        MediaType.APPLICATION_JSON).headers(more));
+        server.expect(requestTo("http://gitlab/api/v4/projects/7/merge_requests/3/diffs?page=2&per_page=2"))
+                .andRespond(withSuccess("[{\"new_path\":\"c\",\"deleted_file\":true}]", MediaType.APPLICATION_JSON).headers(last));
+
+        List<MrDiff> seen = new ArrayList<>();
+        int total = service.streamMrDiffs(7, 3, seen::add);
+
+        server.verify();
+        assertEquals(3, total);
+        assertEquals(List.of("a", "b", "c"), seen.stream().map(MrDiff::getNew_path).toList());
+        assertEquals("+x\n", seen.getFirst().getDiff());
+        assertTrue(seen.get(2).isDeleted_file());
+    }
+}
@@ -0,0 +1,58 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GitLabTokenSchedulerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void burstIsFreeThenCallersQueueAtTheRate() {
+        var bucket = new GitLabTokenScheduler.Bucket("t", new SimpleMeterRegistry());
+        long now = 0;
+        assertEquals(0, bucket.reserve(2, 2, now, 10 * SECOND));
+        assertEquals(0, bucket.reserve(2, 2, now, 10 * SECOND));
+        // out of permits: each further caller queues half a second behind the previous one
+        assertEquals(SECOND / 2, bucket.reserve(2, 2, now, 10 * SECOND));
+        assertEquals(SECOND, bucket.reserve(2, 2, now, 10 * SECOND));
+        // too long a wait is rejected without reserving
+        assertEquals(-1, bucket.reserve(2, 2, now, SECOND));
+        assertEquals(3 * SECOND / 2, bucket.reserve(2, 2, now, 10 * SECOND));
+    }
+
+    @Test
+    void refillsUpToBurstWhileIdle() {
+        var bucket = new GitLabTokenScheduler.Bucket("t", new SimpleMeterRegistry());
+        assertEquals(0, bucket.reserve(1, 1, 0, SECOND));
+        assertEquals(SECOND, bucket.reserve(1, 1, 0, SECOND));
+        // after an hour idle only one request (the burst) goes through immediately
+        long later = 3600 * SECOND;
+        assertEquals(0, bucket.reserve(1, 1, later, SECOND));
+        assertEquals(SECOND, bucket.reserve(1, 1, later, SECOND));
+    }
+
+    @Test
+    void tokensWithTheSameLabelShareOneBucket() {
+        GitTokenService tokenService = mock(GitTokenService.class);
+        // a rotated git_token row keeps its label; tokens outside the table all map to config
+        when(tokenService.tokenInfo("old")).thenReturn(new GitTokenService.TokenInfo("git_token:1", null, null));
+        when(tokenService.tokenInfo("rotated")).thenReturn(new GitTokenService.TokenInfo("git_token:1", null, null));
+        when(tokenService.tokenInfo("env")).thenReturn(GitTokenService.TokenInfo.CONFIG);
+        when(tokenService.tokenInfo("request")).thenReturn(GitTokenService.TokenInfo.CONFIG);
+        var registry = new SimpleMeterRegistry();
+        var scheduler = new GitLabTokenScheduler(new MrAnalysisProperties(), tokenService, registry);
+
+        for (String token : new String[]{"old", "rotated", "env", "request"}) {
+            scheduler.acquire(token);
+        }
+        assertEquals(2, registry.find("gitlab.token.queue.depth").gauges().size());
+        assertEquals(2, registry.get("gitlab.token.queue.wait").tag("token", "git_token:1").timer().count());
+        assertEquals(2, registry.get("gitlab.token.queue.wait").tag("token", "config").timer().count());
+    }
+}
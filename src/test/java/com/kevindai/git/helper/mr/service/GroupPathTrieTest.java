@@ -0,0 +1,45 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.entity.GitTokenEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupPathTrieTest {
+
+    private static GitTokenEntity row(long id, String path, String token, boolean isDefault) {
+        GitTokenEntity e = new GitTokenEntity();
+        e.setId(id);
+        e.setGroupPath(path);
+        e.setToken(token);
+        e.setDefault(isDefault);
+        return e;
+    }
+
+    @Test
+    void resolvesLongestPrefixThenDefault() {
+        GroupPathTrie trie = GroupPathTrie.build(List.of(
+                row(1, "acme", "t-acme", false),
+                row(2, "acme/platform/", "t-platform", false),
+                row(3, null, "t-default", true),
+                row(4, "acme", "t-acme-dup", false)));
+
+        assertEquals("t-platform", trie.resolve("acme/platform/infra"));
+        assertEquals("t-platform", trie.resolve("acme/platform"));
+        assertEquals("t-acme", trie.resolve("acme/web"));
+        assertEquals("t-acme", trie.resolve("acme"));
+        assertEquals("t-default", trie.resolve("other/acme"));
+        assertEquals("t-default", trie.resolve("acmeplatform"));
+        assertEquals("t-default", trie.resolve(null));
+        assertEquals(2, trie.groupTokens());
+        assertTrue(trie.hasDefault());
+    }
+
+    @Test
+    void emptyTrieHasNoToken() {
+        assertNull(GroupPathTrie.EMPTY.resolve("a/b"));
+        assertNull(GroupPathTrie.build(List.of(row(1, "a", "t", false))).resolve("b"));
+    }
+}
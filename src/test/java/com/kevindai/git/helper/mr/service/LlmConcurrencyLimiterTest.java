@@ -0,0 +1,83 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmConcurrencyLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong();
+    private final MrAnalysisProperties properties = new MrAnalysisProperties();
+
+    private LlmConcurrencyLimiter limiter(int initial) {
+        properties.getLlmLimit().setInitialLimit(initial);
+        return new LlmConcurrencyLimiter(properties, new SimpleMeterRegistry(), now::get);
+    }
+
+    @Test
+    void growsWhileSaturatedAndFast() {
+        LlmConcurrencyLimiter limiter = limiter(4);
+        for (int round = 0; round < 10; round++) {
+            List<LlmConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < (int) limiter.limit(); i++) {
+                permits.add(limiter.acquire());
+            }
+            now.addAndGet(SECOND);
+            permits.forEach(p -> p.release(LlmConcurrencyLimiter.Outcome.SUCCESS));
+        }
+        // calls started while at least half the limit was in use count, so about +0.5 per round
+        assertTrue(limiter.limit() >= 8, () -> "limit " + limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void doesNotGrowWhenIdle() {
+        LlmConcurrencyLimiter limiter = limiter(8);
+        for (int i = 0; i < 50; i++) {
+            limiter.call(() -> "ok");
+        }
+        assertEquals(8.0, limiter.limit());
+    }
+
+    @Test
+    void burstOfFailuresShrinksOncePerWindow() {
+        LlmConcurrencyLimiter limiter = limiter(8);
+        List<LlmConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            permits.add(limiter.acquire());
+        }
+        now.addAndGet(SECOND);
+        permits.forEach(p -> p.release(LlmConcurrencyLimiter.Outcome.DROPPED));
+        assertEquals(6.0, limiter.limit());
+
+        // a slow success started after the decrease counts as a new overload signal
+        now.addAndGet(1);
+        var slow = limiter.acquire();
+        now.addAndGet(properties.getLlmLimit().getSlowCallThreshold().toNanos() + SECOND);
+        slow.release(LlmConcurrencyLimiter.Outcome.SUCCESS);
+        assertEquals(4.5, limiter.limit());
+    }
+
+    @Test
+    void classifiesOverloadSignals() {
+        assertEquals(LlmConcurrencyLimiter.Outcome.DROPPED, LlmConcurrencyLimiter.classify(new TransientAiException("503")));
+        assertEquals(LlmConcurrencyLimiter.Outcome.DROPPED,
+                LlmConcurrencyLimiter.classify(new RuntimeException(new SocketTimeoutException("read timed out"))));
+        assertEquals(LlmConcurrencyLimiter.Outcome.DROPPED,
+                LlmConcurrencyLimiter.classify(new NonTransientAiException("HTTP 429 - rate limited")));
+        assertEquals(LlmConcurrencyLimiter.Outcome.IGNORED,
+                LlmConcurrencyLimiter.classify(new NonTransientAiException("HTTP 400 - bad request")));
+        assertEquals(LlmConcurrencyLimiter.Outcome.IGNORED, LlmConcurrencyLimiter.classify(new IllegalStateException("bad json")));
+    }
+}
@@ -0,0 +1,76 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import com.kevindai.git.helper.mr.util.DiffLineCursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmRequestPlannerTest {
+
+    private static LlmRequestPlanner planner(int maxTokens) {
+        MrAnalysisProperties props = new MrAnalysisProperties();
+        props.getPlanner().setMaxTokensPerRequest(maxTokens);
+        props.getPlanner().setCharsPerToken(1.0);
+        return new LlmRequestPlanner(props);
+    }
+
+    private static AddressableDiffBuilder.FileSection section(String path, int hunks, int linesPerHunk) {
+        StringBuilder sb = new StringBuilder("--- File: ").append(path).append(" ---\n");
+        int anchor = 1;
+        for (int h = 0; h < hunks; h++) {
+            sb.append("@@ -").append(h * 100 + 1).append(",1 +").append(h * 100 + 1).append(",1 @@\n");
+            for (int i = 0; i < linesPerHunk; i++) {
+                sb.append("+<<A#").append(anchor++).append("|N|").append(path).append('|').append(i + 1).append(">> x\n");
+            }
+        }
+        sb.append("...\n");
+        MrDiff d = new MrDiff();
+        d.setNew_path(path);
+        return new AddressableDiffBuilder.FileSection(path, d, sb.toString(), 1, anchor - 1,
+                new DiffLineCursor.LineStats(hunks * linesPerHunk, 0));
+    }
+
+    @Test
+    void packsSmallFilesIntoOneRequest() {
+        List<AddressableDiffBuilder.FileSection> sections = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            sections.add(section("conf/app" + i + ".yml", 1, 1));
+        }
+        var requests = planner(10_000).plan(sections);
+        assertEquals(1, requests.size());
+        assertEquals(10, requests.getFirst().paths().size());
+        assertEquals(10, requests.getFirst().diffs().size());
+        // Line counts from annotation travel with the request into strategy scoring
+        assertEquals(10, requests.getFirst().context().totalAddedLines());
+    }
+
+    @Test
+    void splitsOversizedFileAtHunkBoundariesKeepingAnchors() {
+        var big = section("src/Big.java", 6, 10);
+        int budget = big.content().length() / 3;
+        var requests = planner(budget).plan(List.of(section("a.txt", 1, 1), big, section("z.txt", 1, 1)));
+
+        List<String> bigChunks = requests.stream()
+                .filter(r -> r.paths().equals(List.of("src/Big.java")))
+                .map(LlmRequestPlanner.LlmRequest::content)
+                .toList();
+        assertTrue(bigChunks.size() >= 3, "big file should be split");
+        StringBuilder anchors = new StringBuilder();
+        for (String chunk : bigChunks) {
+            assertTrue(chunk.startsWith("--- File: src/Big.java ---\n"));
+            assertTrue(chunk.endsWith("...\n"));
+            assertTrue(chunk.split("\n")[1].startsWith("@@"), "chunk should start at a hunk header");
+            assertTrue(chunk.length() <= budget);
+            chunk.lines().filter(l -> l.startsWith("+<<")).forEach(l -> anchors.append(l).append('\n'));
+        }
+        // every annotated line appears exactly once across the chunks
+        assertEquals(60, anchors.toString().lines().count());
+        assertEquals("a.txt", requests.getFirst().paths().getFirst());
+        assertEquals("z.txt", requests.getLast().paths().getFirst());
+    }
+}
@@ -0,0 +1,106 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.mr.dto.llm.Finding;
+import com.kevindai.git.helper.mr.dto.llm.LlmAnalysisReport;
+import com.kevindai.git.helper.mr.dto.llm.Location;
+import com.kevindai.git.helper.mr.prompt.PromptType;
+import com.kevindai.git.helper.repository.LlmResultCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LlmResultCacheTest {
+
+    private final LlmResultCacheRepository repository = mock(LlmResultCacheRepository.class);
+    private final LlmResultCache cache = new LlmResultCache(repository,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            new MrAnalysisProperties(), new SimpleMeterRegistry(), "model");
+
+    @Test
+    void sameHunksElsewhereShareTheKey() {
+        var here = cache.entryFor(PromptType.JAVA, content("src/a/Foo.java", 10, 5));
+        var moved = cache.entryFor(PromptType.JAVA, content("src/b/Bar.java", 40, 20));
+        assertEquals(here.key(), moved.key());
+        assertEquals(5, here.anchorBase());
+        assertEquals(20, moved.anchorBase());
+
+        var edited = cache.entryFor(PromptType.JAVA, content("src/a/Foo.java", 10, 5).replace("return 2;", "return 3;"));
+        assertNotEquals(here.key(), edited.key());
+        assertNotEquals(here.key(), cache.entryFor(PromptType.GENERIC, content("src/a/Foo.java", 10, 5)).key());
+    }
+
+    @Test
+    void hitsTakeThePositionsOfTheCurrentRequest() {
+        var here = cache.entryFor(PromptType.JAVA, content("src/a/Foo.java", 10, 5));
+        var moved = cache.entryFor(PromptType.JAVA, content("src/b/Bar.java", 40, 20));
+        LlmAnalysisReport report = new LlmAnalysisReport();
+        report.setFindings(List.of(finding("A#7", "src/a/Foo.java", 11, 12), finding(null, "src/a/Foo.java", 3, null)));
+        cache.put(here, PromptType.JAVA, report);
+
+        LlmAnalysisReport hit = cache.get(moved).orElseThrow();
+        Location anchored = hit.getFindings().get(0).getLocation();
+        assertEquals("A#22", anchored.getAnchorId());
+        assertEquals("src/b/Bar.java", anchored.getFile());
+        assertEquals(41, anchored.getStartLine());
+        assertEquals(42, anchored.getEndLine());
+        assertEquals("new_line", anchored.getLineType());
+        Location unanchored = hit.getFindings().get(1).getLocation();
+        assertNull(unanchored.getAnchorId());
+        assertEquals("src/b/Bar.java", unanchored.getFile());
+        // The caller's report keeps its own positions
+        assertEquals("src/a/Foo.java", report.getFindings().get(1).getLocation().getFile());
+    }
+
+    @Test
+    void hitsAreWrittenBackInBatches() {
+        var entry = cache.entryFor(PromptType.JAVA, content("src/a/Foo.java", 10, 5));
+        LlmAnalysisReport report = new LlmAnalysisReport();
+        report.setFindings(List.of());
+        cache.put(entry, PromptType.JAVA, report);
+
+        cache.get(entry);
+        cache.get(entry);
+        verify(repository, never()).touch(anyString(), anyLong(), any());
+        cache.flushHits();
+        verify(repository).touch(eq(entry.key()), eq(2L), any(Instant.class));
+        // Nothing new to write
+        cache.flushHits();
+        verify(repository, times(1)).touch(anyString(), anyLong(), any());
+    }
+
+    private static String content(String path, int newStart, int firstAnchor) {
+        int oldStart = newStart - 1;
+        int a = firstAnchor;
+        return "--- File: " + path + " ---\n"
+                + "@@ -" + oldStart + ",3 +" + newStart + ",3 @@ class Foo\n"
+                + " <<A#" + a + "|N|" + path + "|" + newStart + ">> int a() {\n"
+                + "-<<A#" + (a + 1) + "|O|" + path + "|" + (oldStart + 1) + ">>     return 1;\n"
+                + "+<<A#" + (a + 2) + "|N|" + path + "|" + (newStart + 1) + ">>     return 2;\n"
+                + " <<A#" + (a + 3) + "|N|" + path + "|" + (newStart + 2) + ">> }\n"
+                + "...\n";
+    }
+
+    private static Finding finding(String anchorId, String file, int startLine, Integer endLine) {
+        Location loc = new Location();
+        loc.setAnchorId(anchorId);
+        loc.setFile(file);
+        loc.setStartLine(startLine);
+        loc.setEndLine(endLine);
+        Finding f = new Finding();
+        f.setTitle("t");
+        f.setLocation(loc);
+        return f;
+    }
+}
@@ -0,0 +1,126 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.entity.MrInfoEntity;
+import com.kevindai.git.helper.mr.dto.llm.Finding;
+import com.kevindai.git.helper.mr.dto.llm.LlmAnalysisReport;
+import com.kevindai.git.helper.mr.dto.llm.Location;
+import com.kevindai.git.helper.repository.MrAnalysisDetailRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark of {@link MrAnalysisDetailService#persist} against embedded H2: one JDBC batch per
+ * {@code hibernate.jdbc.batch_size} rows versus one statement per finding. Run with
+ * {@code mvn test -Dtest=MrAnalysisDetailPersistBenchmarkTest -Dbenchmark=true}; point
+ * {@code spring.datasource.*} at a local PostgreSQL for representative round-trip costs.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(MrAnalysisDetailService.class)
+class MrAnalysisDetailPersistBenchmarkTest {
+
+    private static final int FINDINGS = 200;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private MrAnalysisDetailService detailService;
+    @Autowired
+    private MrAnalysisDetailRepository repository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void batchedInsertsBeatPerRowInserts() {
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        LlmAnalysisReport report = report(FINDINGS);
+
+        Run perRow = run(report, 1, stats);
+        Run batched = run(report, 50, stats);
+
+        log.info("persist {} findings: per-row {} ms ({} statements), batched {} ms ({} statements)",
+                FINDINGS, String.format("%.2f", perRow.millisPerRound()), perRow.statementsPerRound(),
+                String.format("%.2f", batched.millisPerRound()), batched.statementsPerRound());
+        assertEquals((long) FINDINGS * (WARMUP + ROUNDS) * 2, repository.count());
+        assertTrue(batched.statementsPerRound() < perRow.statementsPerRound(),
+                () -> "batched " + batched.statementsPerRound() + " statements vs per-row " + perRow.statementsPerRound());
+    }
+
+    private Run run(LlmAnalysisReport report, int batchSize, Statistics stats) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        MrInfoEntity info = new MrInfoEntity();
+        info.setId(1L);
+        info.setProjectId(10L);
+        info.setMrId(7L);
+        for (int i = 0; i < WARMUP; i++) {
+            persist(tx, info, report, batchSize);
+        }
+        stats.clear();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            persist(tx, info, report, batchSize);
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Run(elapsed / 1e6 / ROUNDS, stats.getPrepareStatementCount() / ROUNDS);
+    }
+
+    private void persist(TransactionTemplate tx, MrInfoEntity info, LlmAnalysisReport report, int batchSize) {
+        tx.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            var saved = detailService.persist(info, report, AnchorIndex.EMPTY);
+            assertNotNull(saved.getFirst().getId());
+        });
+    }
+
+    private static LlmAnalysisReport report(int n) {
+        List<Finding> findings = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Finding f = new Finding();
+            f.setSeverity(i % 3 == 0 ? "high" : "low");
+            f.setCategory("correctness");
+            f.setTitle("Finding " + i);
+            f.setDescription("Description of finding " + i + " ".repeat(200));
+            Location loc = new Location();
+            loc.setFile("src/main/java/Foo" + (i % 20) + ".java");
+            loc.setStartLine(i);
+            loc.setLineType("new_line");
+            f.setLocation(loc);
+            f.setEvidence("evidence " + i);
+            f.setConfidence(0.8);
+            f.setTags(List.of("tag" + (i % 5)));
+            findings.add(f);
+        }
+        var report = new LlmAnalysisReport();
+        report.setFindings(findings);
+        return report;
+    }
+
+    private record Run(double millisPerRound, long statementsPerRound) {
+    }
+}
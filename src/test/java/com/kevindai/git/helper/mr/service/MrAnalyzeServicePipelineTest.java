@@ -0,0 +1,167 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.config.MrAnalysisProperties;
+import com.kevindai.git.helper.entity.MrInfoEntity;
+import com.kevindai.git.helper.mr.dto.MrAnalyzeRequest;
+import com.kevindai.git.helper.mr.dto.ParsedMrUrl;
+import com.kevindai.git.helper.mr.dto.gitlab.MrDetail;
+import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import com.kevindai.git.helper.mr.dto.llm.Finding;
+import com.kevindai.git.helper.mr.dto.llm.LlmAnalysisReport;
+import com.kevindai.git.helper.repository.MrInfoEntityRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MrAnalyzeServicePipelineTest {
+
+    private static final int FILES = 8;
+
+    private final GitLabService gitLabService = mock(GitLabService.class);
+    private final LlmAnalysisService llmAnalysisService = mock(LlmAnalysisService.class);
+    private final MrInfoEntityRepository mrInfoRepository = mock(MrInfoEntityRepository.class);
+    private final MrAnalysisDetailService detailService = mock(MrAnalysisDetailService.class);
+    private final MrAnalysisLeaseService leaseService = mock(MrAnalysisLeaseService.class);
+    private final MrAnalysisProperties properties = new MrAnalysisProperties();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private MrAnalyzeService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties.getIncremental().setEnabled(false);
+        properties.getPlanner().setMaxFilesPerRequest(1);
+        properties.getPipeline().setPersistQueueCapacity(1);
+
+        ParsedMrUrl parsed = new ParsedMrUrl();
+        parsed.setGroupFullPath("g");
+        parsed.setProjectPath("p");
+        parsed.setMrId(7);
+        when(gitLabService.parseMrUrl(anyString())).thenReturn(parsed);
+        when(gitLabService.resolveProjectId("g", "p")).thenReturn(10L);
+        MrDetail detail = new MrDetail();
+        detail.setSha("abc");
+        when(gitLabService.fetchMrDetails(10L, 7)).thenReturn(detail);
+        when(gitLabService.streamMrDiffs(eq(10L), eq(7), any())).thenAnswer(inv -> {
+            Consumer<MrDiff> sink = inv.getArgument(2);
+            for (int i = 0; i < FILES; i++) {
+                MrDiff d = new MrDiff();
+                d.setOld_path("src/F" + i + ".java");
+                d.setNew_path("src/F" + i + ".java");
+                d.setDiff("@@ -1,1 +1,1 @@\n-int a = " + i + ";\n+int b = " + i + ";\n");
+                sink.accept(d);
+            }
+            return FILES;
+        });
+        when(mrInfoRepository.findByProjectIdAndMrIdAndSha(10L, 7L, "abc")).thenReturn(Optional.empty());
+        when(mrInfoRepository.save(any())).thenAnswer(inv -> {
+            MrInfoEntity e = inv.getArgument(0);
+            e.setId(1L);
+            return e;
+        });
+        when(detailService.persist(any(), any(), any())).thenReturn(List.of());
+        when(leaseService.runExclusive(any(), any())).thenAnswer(inv -> ((Supplier<?>) inv.getArgument(1)).get());
+
+        service = new MrAnalyzeService(gitLabService, llmAnalysisService, mrInfoRepository, new AddressableDiffBuilder(),
+                detailService, mock(GitTokenService.class), new GitLabRequestContext(), executor,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new LlmRequestPlanner(properties),
+                mock(MrIncrementalService.class), mock(MrDiffSnapshotService.class),
+                new AnalysisStageMetrics(new SimpleMeterRegistry()), properties, leaseService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void workersExitWhenThePersistStageFails() throws Exception {
+        // LLM results pile up behind the one-slot queue until the persist stage starts
+        CountDownLatch started = new CountDownLatch(1);
+        when(llmAnalysisService.analyzeDiff(anyString(), any(), any())).thenAnswer(inv -> {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            return report();
+        });
+        AnalysisProgressListener listener = new AnalysisProgressListener() {
+            @Override
+            public void onStarted(int totalFiles) {
+                started.countDown();
+            }
+
+            @Override
+            public void onFileDone(String path, List<Finding> findings, boolean success) {
+                throw new IllegalStateException("listener failed");
+            }
+        };
+
+        assertThrows(IllegalStateException.class, () -> service.analyzeMr(request(), listener));
+
+        // Workers blocked on the full queue must give up instead of waiting forever
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "LLM workers still blocked on hand-off");
+        verify(llmAnalysisService, atMost(FILES)).analyzeDiff(anyString(), any(), any());
+    }
+
+    @Test
+    void completedShaIsServedFromStorage() {
+        MrInfoEntity info = info();
+        info.setAnalysisCompletedAt(Instant.now());
+        when(mrInfoRepository.findByProjectIdAndMrIdAndSha(10L, 7L, "abc")).thenReturn(Optional.of(info));
+        when(detailService.loadRows(1L)).thenReturn(List.of());
+
+        var resp = service.analyzeMr(request());
+        assertEquals("No issue found.", resp.getAnalysisResult().getSummaryMarkdown());
+        verifyNoInteractions(llmAnalysisService);
+        verify(detailService, never()).deleteAll(any());
+    }
+
+    @Test
+    void unfinishedShaIsAnalyzedAgain() {
+        // A run that died after storing some findings left the row without a completion mark
+        when(mrInfoRepository.findByProjectIdAndMrIdAndSha(10L, 7L, "abc")).thenReturn(Optional.of(info()));
+        when(llmAnalysisService.analyzeDiff(anyString(), any(), any())).thenReturn(report());
+
+        service.analyzeMr(request());
+        verify(detailService).deleteAll(1L);
+        verify(llmAnalysisService, times(FILES)).analyzeDiff(anyString(), any(), any());
+        verify(mrInfoRepository).save(argThat(i -> i.getAnalysisCompletedAt() != null));
+    }
+
+    private static MrInfoEntity info() {
+        MrInfoEntity info = new MrInfoEntity();
+        info.setId(1L);
+        info.setProjectId(10L);
+        info.setMrId(7L);
+        info.setSha("abc");
+        return info;
+    }
+
+    private static MrAnalyzeRequest request() {
+        MrAnalyzeRequest req = new MrAnalyzeRequest();
+        req.setMrUrl("https://gitlab.example.com/g/p/-/merge_requests/7");
+        return req;
+    }
+
+    private static LlmAnalysisReport report() {
+        LlmAnalysisReport report = new LlmAnalysisReport();
+        report.setFindings(List.of());
+        return report;
+    }
+}
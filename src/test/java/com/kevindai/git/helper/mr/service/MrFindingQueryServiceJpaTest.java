@@ -0,0 +1,133 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.entity.MrAnalysisDetailEntity;
+import com.kevindai.git.helper.mr.dto.FindingQueryResponse;
+import com.kevindai.git.helper.mr.model.Severity;
+import com.kevindai.git.helper.repository.MrAnalysisDetailRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset paging of {@link MrFindingQueryService} against embedded H2.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(MrFindingQueryService.class)
+class MrFindingQueryServiceJpaTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-01T10:00:00Z");
+
+    @Autowired
+    private MrFindingQueryService queryService;
+    @Autowired
+    private MrAnalysisDetailRepository repository;
+
+    private List<MrAnalysisDetailEntity> rows;
+
+    @BeforeEach
+    void seed() {
+        rows = new ArrayList<>();
+        // 11 rows over 3 timestamps, most of them tied on created_at
+        for (int i = 0; i < 11; i++) {
+            Instant createdAt = T0.plusSeconds(i < 5 ? 0 : i < 9 ? 60 : 120);
+            rows.add(row(i % 2 == 0 ? 10L : 20L, i % 3 == 0 ? "high" : "low",
+                    i % 2 == 0 ? "src/main/Foo" + i + ".java" : "docs/readme" + i + ".md",
+                    i % 4 == 0 ? 1 : 0, createdAt));
+        }
+        rows = repository.saveAll(rows);
+        rows.sort(Comparator.comparing(MrAnalysisDetailEntity::getCreatedAt)
+                .thenComparing(MrAnalysisDetailEntity::getId).reversed());
+    }
+
+    @Test
+    void pagesThroughTiesWithoutSkipsOrDuplicates() {
+        for (int limit : new int[]{1, 2, 3, 4, 10}) {
+            List<Long> seen = pageAll(query(null, null, null, null, null, limit));
+            assertEquals(ids(rows), seen, "limit " + limit);
+            assertEquals(seen.size(), new HashSet<>(seen).size(), "limit " + limit);
+        }
+    }
+
+    @Test
+    void nextCursorOnlyWhenMoreRowsExist() {
+        // limit == row count: the extra row is missing, so this is the last page
+        FindingQueryResponse exact = queryService.query(query(null, null, null, null, null, rows.size()));
+        assertEquals(rows.size(), exact.getItems().size());
+        assertNull(exact.getNextCursor());
+
+        FindingQueryResponse oneShort = queryService.query(query(null, null, null, null, null, rows.size() - 1));
+        assertEquals(rows.size() - 1, oneShort.getItems().size());
+        assertNotNull(oneShort.getNextCursor());
+        FindingQueryResponse last = queryService.query(query(null, null, null, null, oneShort.getNextCursor(), rows.size() - 1));
+        assertEquals(List.of(rows.getLast().getId()), last.getItems().stream().map(FindingQueryResponse.Item::getId).toList());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void filtersApplyAcrossPages() {
+        var filtered = query(List.of(10L), List.of("high"), "src/**/*.java", 1, null, 1);
+        List<Long> expected = ids(rows.stream()
+                .filter(r -> r.getProjectId() == 10L && "high".equals(r.getSeverity())
+                        && r.getFile().startsWith("src/") && r.getStatus() == 1)
+                .toList());
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, pageAll(filtered));
+
+        var window = new MrFindingQueryService.Query(null, null, null, null, null,
+                T0.plusSeconds(60), T0.plusSeconds(120), null, 100);
+        assertEquals(ids(rows.stream().filter(r -> r.getCreatedAt().equals(T0.plusSeconds(60))).toList()),
+                pageAll(window));
+    }
+
+    private List<Long> pageAll(MrFindingQueryService.Query first) {
+        List<Long> seen = new ArrayList<>();
+        Set<String> cursors = new HashSet<>();
+        MrFindingQueryService.Query q = first;
+        while (true) {
+            FindingQueryResponse page = queryService.query(q);
+            page.getItems().forEach(item -> seen.add(item.getId()));
+            if (page.getNextCursor() == null) {
+                return seen;
+            }
+            assertTrue(cursors.add(page.getNextCursor()), "cursor repeated");
+            q = new MrFindingQueryService.Query(q.projectIds(), q.severities(), q.categories(), q.file(), q.status(),
+                    q.from(), q.to(), page.getNextCursor(), q.limit());
+        }
+    }
+
+    private static MrFindingQueryService.Query query(List<Long> projectIds, List<String> severities, String file,
+                                                     Integer status, String cursor, int limit) {
+        return new MrFindingQueryService.Query(projectIds, severities, null, file, status, null, null, cursor, limit);
+    }
+
+    private static List<Long> ids(List<MrAnalysisDetailEntity> rows) {
+        return rows.stream().map(MrAnalysisDetailEntity::getId).toList();
+    }
+
+    private static MrAnalysisDetailEntity row(long projectId, String severity, String file, int status, Instant createdAt) {
+        MrAnalysisDetailEntity e = new MrAnalysisDetailEntity();
+        e.setMrInfoId(1L);
+        e.setProjectId(projectId);
+        e.setMrId(7L);
+        e.setSeverity(severity);
+        e.setSeverityRank(Severity.from(severity).rank());
+        e.setCategory("correctness");
+        e.setTitle("finding");
+        e.setFile(file);
+        e.setStatus(status);
+        e.setCreatedAt(createdAt);
+        e.setUpdatedAt(createdAt);
+        return e;
+    }
+}
@@ -0,0 +1,29 @@
+package com.kevindai.git.helper.mr.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MrFindingQueryServiceTest {
+
+    @Test
+    void globBecomesEscapedLikePattern() {
+        assertEquals("src/%.java", MrFindingQueryService.globToLike("src/**/*.java"));
+        assertEquals("%/Foo.java", MrFindingQueryService.globToLike("**/*/Foo.java"));
+        assertEquals("src/%", MrFindingQueryService.globToLike("src/**"));
+        assertEquals("%Foo_.kt", MrFindingQueryService.globToLike("*Foo?.kt"));
+        assertEquals("db/100\\%\\_done.sql", MrFindingQueryService.globToLike("db/100%_done.sql"));
+    }
+
+    @Test
+    void cursorRoundTripsAndRejectsGarbage() {
+        var cursor = new MrFindingQueryService.Cursor(Instant.parse("2025-03-01T10:15:30.123456Z"), 9_876_543_210L);
+        String encoded = MrFindingQueryService.encodeCursor(cursor);
+        assertEquals(cursor, MrFindingQueryService.decodeCursor(encoded));
+
+        assertThrows(IllegalArgumentException.class, () -> MrFindingQueryService.decodeCursor("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> MrFindingQueryService.decodeCursor("bm8tc2VwYXJhdG9y"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.entity.MrAnalysisDetailEntity;
+import com.kevindai.git.helper.entity.MrFileDigestEntity;
+import com.kevindai.git.helper.entity.MrInfoEntity;
+import com.kevindai.git.helper.mr.dto.gitlab.MrDiff;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MrIncrementalServiceTest {
+
+    private final MrIncrementalService service = new MrIncrementalService(null, null, null);
+    private final AddressableDiffBuilder builder = new AddressableDiffBuilder();
+
+    private static MrDiff diff(String path, String body) {
+        MrDiff d = new MrDiff();
+        d.setNew_path(path);
+        d.setOld_path(path);
+        d.setDiff(body);
+        return d;
+    }
+
+    @Test
+    void hashIgnoresHunkLineNumbers() {
+        var a = diff("src/A.java", "@@ -10,2 +10,3 @@ class A\n a\n+b\n c\n");
+        var shifted = diff("src/A.java", "@@ -42,2 +42,3 @@ class A\n a\n+b\n c\n");
+        var changed = diff("src/A.java", "@@ -10,2 +10,3 @@ class A\n a\n+B\n c\n");
+        assertEquals(MrIncrementalService.hash(a), MrIncrementalService.hash(shifted));
+        assertNotEquals(MrIncrementalService.hash(a), MrIncrementalService.hash(changed));
+    }
+
+    @Test
+    void carriesFindingsOverWithRemappedAnchors() {
+        var unchangedBefore = diff("src/B.java", "@@ -1,2 +1,3 @@\n a\n+b\n c\n");
+        var oldAnnotated = builder.buildAnnotatedWithIndex(List.of(diff("src/A.java", "@@ -1,1 +1,2 @@\n x\n+y\n"), unchangedBefore));
+        var oldDigest = service.digest(oldAnnotated).get("src/B.java");
+        assertEquals(3, oldDigest.firstAnchor()); // A.java used A#1..A#2
+
+        // New push: A.java grew, B.java is identical but shifted down in the target branch
+        var unchangedAfter = diff("src/B.java", "@@ -5,2 +5,3 @@\n a\n+b\n c\n");
+        var newDiffs = List.of(diff("src/A.java", "@@ -1,1 +1,4 @@\n x\n+y\n+z\n+w\n"), unchangedAfter);
+        var newAnnotated = builder.buildAnnotatedWithIndex(newDiffs);
+        var newIndex = newAnnotated.getIndex();
+        var newDigest = service.digest(newAnnotated).get("src/B.java");
+
+        MrFileDigestEntity stored = new MrFileDigestEntity();
+        stored.setFilePath("src/B.java");
+        stored.setDiffHash(oldDigest.hash());
+        stored.setFirstAnchor(oldDigest.firstAnchor());
+        stored.setAnchorCount(oldDigest.anchorCount());
+        MrAnalysisDetailEntity finding = new MrAnalysisDetailEntity();
+        finding.setId(7L);
+        finding.setFile("src/B.java");
+        finding.setAnchorId("A#4"); // "+b" line
+        finding.setStatus(1);
+        MrInfoEntity previous = new MrInfoEntity();
+        previous.setId(1L);
+        var baseline = new MrIncrementalService.Baseline(previous, Map.of("src/B.java", stored), Map.of("src/B.java", List.of(finding)));
+
+        MrInfoEntity target = new MrInfoEntity();
+        target.setId(2L);
+        var carried = service.carryOver(baseline, newDigest, target, newIndex);
+        assertNotNull(carried);
+        assertEquals(1, carried.size());
+        assertEquals("A#6", carried.getFirst().getAnchorId());
+        assertEquals(6, carried.getFirst().getStartLine());
+        assertEquals("new_line", carried.getFirst().getLineType());
+        assertEquals(2L, carried.getFirst().getMrInfoId());
+        assertEquals(1, carried.getFirst().getStatus());
+
+        var changed = new MrIncrementalService.FileDigest("src/B.java", "src/B.java", "other", newDigest.firstAnchor(), newDigest.anchorCount());
+        assertNull(service.carryOver(baseline, changed, target, newIndex));
+    }
+}
@@ -0,0 +1,79 @@
+package com.kevindai.git.helper.mr.service;
+
+import com.kevindai.git.helper.mr.dto.llm.Finding;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingReportParserTest {
+
+    private static final String REPORT = """
+            ```json
+            {"schemaVersion": "1.0", "summaryMarkdown": "two {issues} [found]",
+             "findings": [
+               {"severity": "high", "title": "NPE \\"here\\" }", "location": {"anchorId": "A#3", "file": "a/B.java"}, "tags": ["npe"]},
+               {"severity": "low", "title": "naming", "location": {"anchorId": "A#9"}}
+             ],
+             "stats": {"findings": 2}}
+            ```""";
+
+    @Test
+    void emitsEachFindingWhenItsObjectCloses() {
+        List<Finding> seen = new ArrayList<>();
+        StreamingReportParser parser = new StreamingReportParser(seen::add);
+        int firstClose = REPORT.indexOf("\"npe\"]}") + "\"npe\"]}".length();
+
+        parser.feed(REPORT.substring(0, firstClose - 1));
+        assertTrue(seen.isEmpty());
+        parser.feed(REPORT.substring(firstClose - 1, firstClose));
+        assertEquals(1, seen.size());
+        assertEquals("NPE \"here\" }", seen.getFirst().getTitle());
+        assertEquals("A#3", seen.getFirst().getLocation().getAnchorId());
+
+        // Feed the rest one character at a time, as a stream of tiny chunks would
+        for (char c : REPORT.substring(firstClose).toCharArray()) {
+            parser.feed(String.valueOf(c));
+        }
+        assertEquals(2, seen.size());
+        StreamingReportParser.Result result = parser.finish();
+        assertTrue(result.complete());
+        assertEquals("two {issues} [found]", result.report().getSummaryMarkdown());
+        assertEquals(2, result.report().getFindings().size());
+    }
+
+    @Test
+    void keepsParsedFindingsWhenTheDocumentIsTruncated() {
+        List<Finding> seen = new ArrayList<>();
+        StreamingReportParser parser = new StreamingReportParser(seen::add);
+        parser.feed(REPORT.substring(0, REPORT.indexOf("\"naming\"")));
+
+        StreamingReportParser.Result result = parser.finish();
+        assertFalse(result.complete());
+        assertEquals(1, result.report().getFindings().size());
+        assertEquals("high", result.report().getFindings().getFirst().getSeverity());
+        assertEquals(1, seen.size());
+    }
+
+    @Test
+    void skipsMalformedFindingAndKeepsTheOthers() {
+        StreamingReportParser parser = new StreamingReportParser(f -> {
+        });
+        parser.feed("{\"findings\": [{\"severity\": \"high\", \"confidence\": \"very\"}, {\"severity\": \"low\"}], \"schemaVersion\": }");
+
+        StreamingReportParser.Result result = parser.finish();
+        assertFalse(result.complete());
+        assertEquals(1, result.malformed());
+        assertEquals("low", result.report().getFindings().getFirst().getSeverity());
+    }
+
+    @Test
+    void failsWhenNothingParsed() {
+        StreamingReportParser parser = new StreamingReportParser(f -> {
+        });
+        parser.feed("Sorry, I cannot help with that.");
+        assertThrows(IllegalStateException.class, parser::finish);
+    }
+}
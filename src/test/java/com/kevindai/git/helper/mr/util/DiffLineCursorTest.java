@@ -0,0 +1,53 @@
+package com.kevindai.git.helper.mr.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffLineCursorTest {
+
+    @Test
+    void walksLinesAndParsesHunkHeaders() {
+        String diff = "@@ -10,2 +12,3 @@ class A\n a\n+b\n-c\n\n@@ -40 +43 @@\n+d";
+        DiffLineCursor c = new DiffLineCursor(diff);
+        List<String> lines = new ArrayList<>();
+        List<Integer> newStarts = new ArrayList<>();
+        while (c.next()) {
+            lines.add(c.appendLine(new StringBuilder()).toString());
+            if (c.isHunkHeader()) {
+                assertTrue(c.inHunk());
+                newStarts.add(c.hunkNewStart());
+            }
+        }
+        assertEquals(List.of("@@ -10,2 +12,3 @@ class A", " a", "+b", "-c", "", "@@ -40 +43 @@", "+d"), lines);
+        assertEquals(List.of(12, 43), newStarts);
+    }
+
+    @Test
+    void malformedHeaderLeavesHunk() {
+        DiffLineCursor c = new DiffLineCursor("@@ -1,1 +1,1 @@\n+a\n@@ broken\n+b\n");
+        assertTrue(c.next());
+        assertEquals(1, c.hunkOldStart());
+        assertTrue(c.next());
+        assertTrue(c.inHunk());
+        assertEquals("a", c.appendBody(new StringBuilder()).toString());
+        assertTrue(c.next());
+        assertTrue(c.isHunkHeader());
+        assertFalse(c.inHunk());
+        assertTrue(c.next());
+        assertFalse(c.inHunk());
+        assertFalse(c.next());
+    }
+
+    @Test
+    void countsChangedLinesButNotFileHeaders() {
+        String diff = "--- a/x\n+++ b/x\n@@ -1,2 +1,2 @@\n---removed dashes\n+++added pluses\n ctx\n";
+        DiffLineCursor.LineStats stats = DiffLineCursor.LineStats.of(diff);
+        assertEquals(1, stats.added());
+        assertEquals(1, stats.removed());
+        assertEquals(DiffLineCursor.LineStats.EMPTY, DiffLineCursor.LineStats.of(null));
+    }
+}